@@ -0,0 +1,167 @@
+package preferencepaths;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * End to end benchmarks of the queries on the social network databases: a
+ * preference path query, a sequence query through one waypoint region and the
+ * set reachability prefilter. The database is opened once per trial, outside
+ * the measurement, and warmed up with the JIT.
+ *
+ * The graph sizes are the databases PreferencePaths is run on; pick the ones
+ * at hand with -p db=... The open list order is planned per query, AUTO, or
+ * fixed for every query with -p frontier=... Run with the gc profiler to get
+ * the allocation rate, for example
+ * java -cp ... org.openjdk.jmh.Main QueryBenchmark -p db=target/social4.db -prof gc
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark
+{
+    private static final String PEOPLE_IN = "match (a:Person)-[:IsLocatedIn]->(b:Place)-[:IsPartOf]->(c:Place) where c.name=\"%s\" return id(a) limit %d";
+
+    // Preference levels, most rewarded first
+    private static final String[] PREFERENCES = {
+        "match (n:Post) return str(id(n))",
+        "match ()-[r:Knows]->() return type(r) limit 1",
+        "match (n:Comment) return str(id(n))",
+        "match ()-[r:HasCreator]->() return type(r) limit 1"
+    };
+
+    @Param({ "target/social4.db", "target/socialDouble.db", "target/socialQuad.db" })
+    public String db;
+
+    @Param({ "1", "16", "256" })
+    public int seeds;
+
+    @Param({ "1", "2", "4" })
+    public int levels;
+
+    @Param({ "AUTO", "LOWER_BOUND", "BOUND_SPREAD" })
+    public QueryOptions.Frontier frontier;
+
+    private PreferencePaths paths;
+    private String startNodesQuery;
+    private String endNodesQuery;
+    private ArrayList<String> midPointsQueries;
+    private ArrayList<String> preferenceQueries;
+    private ArrayList<String> excludeQueries;
+    private QueryOptions options;
+    private long[] startIds;
+    private long[] endIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        paths = new PreferencePaths();
+        paths.createDb(db);
+
+        startNodesQuery = String.format(PEOPLE_IN, "Japan", seeds);
+        endNodesQuery = String.format(PEOPLE_IN, "United_States", seeds);
+        midPointsQueries = new ArrayList<String>();
+        midPointsQueries.add(String.format(PEOPLE_IN, "India", seeds));
+
+        preferenceQueries = new ArrayList<String>();
+        for (int i = 0; i < levels; i++)
+        {
+            preferenceQueries.add(PREFERENCES[i]);
+        }
+        excludeQueries = new ArrayList<String>();
+        excludeQueries.add("match ()-[r:ReplyOf]->() return type(r) limit 1");
+        // Every invocation searches, instead of returning the first one's result
+        options = new QueryOptions();
+        options.setResultCacheEnabled(false);
+        options.setFrontier(frontier);
+
+        startIds = ids(paths.getGraphDb(), startNodesQuery);
+        endIds = ids(paths.getGraphDb(), endNodesQuery);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        paths.shutDown();
+    }
+
+    @Benchmark
+    public Object preferencePathQuery()
+    {
+        return paths.preferencePathQuery(startNodesQuery, endNodesQuery, preferenceQueries, excludeQueries, options);
+    }
+
+    @Benchmark
+    public Object sequencePathQuery()
+    {
+        return paths.sequencePathQuery(startNodesQuery, endNodesQuery, midPointsQueries, 1);
+    }
+
+    @Benchmark
+    public long[][] reachabilityPrefilter()
+    {
+        GraphDatabaseService graphDb = paths.getGraphDb();
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            long[][] pruned = new SetReachability(graphDb).prune(startIds, endIds);
+            tx.success();
+            return pruned;
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+
+    private static long[] ids(GraphDatabaseService graphDb, String query)
+    {
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            ArrayList<Long> ids = new ArrayList<Long>();
+            Result result = graphDb.execute(query);
+            while (result.hasNext())
+            {
+                for (Object value : result.next().values())
+                {
+                    ids.add(((Number) value).longValue());
+                }
+            }
+            tx.success();
+
+            long[] array = new long[ids.size()];
+            for (int i = 0; i < array.length; i++)
+            {
+                array[i] = ids.get(i);
+            }
+            return array;
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+}
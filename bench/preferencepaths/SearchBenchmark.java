@@ -0,0 +1,270 @@
+package preferencepaths;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * Benchmarks of the search engine on a random in-memory graph, so they measure
+ * the search and not the store: the full preference path search, the packed
+ * edge cost and the frontier dominance checks. The graph, the seed sets and
+ * the preference sets are drawn from a fixed seed, so runs are comparable.
+ *
+ * Run with the gc profiler to get the allocation rate, for example
+ * java -cp ... org.openjdk.jmh.Main SearchBenchmark -prof gc
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark
+{
+    private static final int NEGATIVE_REWARD = -1000000;
+    private static final int DEGREE = 8;
+    private static final int FRONTIER_POINTS = 64;
+    private static final int PROBES = 1024;
+    private static final int SET_PERCENT = 5;
+
+    @Param({ "10000", "100000" })
+    public int nodes;
+
+    @Param({ "1", "16", "256" })
+    public int seeds;
+
+    @Param({ "1", "2", "4" })
+    public int levels;
+
+    @Param({ "LOWER_BOUND", "BOUND_SPREAD" })
+    public QueryOptions.Frontier frontier;
+
+    // 0 computes the full skyline
+    @Param({ "0", "10" })
+    public int topK;
+
+    private RandomGraph graph;
+    private RewardTable rewards;
+    private long[] startIds;
+    private long[] endIds;
+    private ParetoFrontier<Integer> skyline;
+    private int[] probeLengths;
+    private int[] probeRewards;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Random random = new Random(42);
+        graph = new RandomGraph(nodes, DEGREE, random);
+        rewards = rewards(nodes, levels, random);
+        startIds = pick(random, nodes, seeds);
+        endIds = pick(random, nodes, seeds);
+
+        skyline = new ParetoFrontier<Integer>();
+        for (int i = 0; i < FRONTIER_POINTS; i++)
+        {
+            skyline.add(1 + i, i, i, null);
+        }
+        probeLengths = new int[PROBES];
+        probeRewards = new int[PROBES];
+        for (int i = 0; i < PROBES; i++)
+        {
+            probeLengths[i] = 1 + random.nextInt(FRONTIER_POINTS + 8);
+            probeRewards[i] = random.nextInt(FRONTIER_POINTS + 8);
+        }
+    }
+
+    @Benchmark
+    public Object search()
+    {
+        QueryOptions options = new QueryOptions();
+        options.setTimeOut(Long.MAX_VALUE);
+        options.setTopK(topK);
+        PreferenceSearch search = new PreferenceSearch(graph.view(rewards), rewards, options, null, frontier);
+        return search.run(startIds, endIds);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void cost(Blackhole blackhole)
+    {
+        for (int i = 0; i < PROBES; i++)
+        {
+            blackhole.consume(rewards.cost(0, i % nodes));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void dominates(Blackhole blackhole)
+    {
+        for (int i = 0; i < PROBES; i++)
+        {
+            blackhole.consume(skyline.dominates(probeLengths[i], probeRewards[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void strictlyDominates(Blackhole blackhole)
+    {
+        for (int i = 0; i < PROBES; i++)
+        {
+            blackhole.consume(skyline.strictlyDominates(probeLengths[i], probeRewards[i]));
+        }
+    }
+
+    /**
+     * Preference levels over random node sets, the first level rewarded most,
+     * as preference queries would give them.
+     */
+    static RewardTable rewards(int nodes, int levels, Random random)
+    {
+        RewardTable rewards = new RewardTable(NEGATIVE_REWARD, 1024);
+        for (int level = 0; level < levels; level++)
+        {
+            long[] ids = pick(random, nodes, nodes * SET_PERCENT / 100);
+            rewards.putAll(NodeIdSet.of(ids, ids.length), levels - level);
+        }
+        return rewards;
+    }
+
+    static long[] pick(Random random, int nodes, int count)
+    {
+        long[] ids = new long[Math.min(count, nodes)];
+        for (int i = 0; i < ids.length; i++)
+        {
+            ids[i] = random.nextInt(nodes);
+        }
+        return ids;
+    }
+
+    /**
+     * Random directed graph of nodes with a fixed out degree, stored as
+     * incoming and outgoing adjacency arrays. Edge handles are edge indexes.
+     */
+    static class RandomGraph
+    {
+        private final int[] sources;
+        private final int[] targets;
+        private final int[] inOffsets;
+        private final int[] inEdges;
+        private final int[] outOffsets;
+
+        RandomGraph(int nodes, int degree, Random random)
+        {
+            int edges = nodes * degree;
+            sources = new int[edges];
+            targets = new int[edges];
+            outOffsets = new int[nodes + 1];
+            for (int e = 0; e < edges; e++)
+            {
+                sources[e] = e / degree;
+                targets[e] = random.nextInt(nodes);
+            }
+            for (int n = 0; n <= nodes; n++)
+            {
+                outOffsets[n] = n * degree;
+            }
+
+            inOffsets = new int[nodes + 1];
+            for (int e = 0; e < edges; e++)
+            {
+                inOffsets[targets[e] + 1]++;
+            }
+            for (int n = 0; n < nodes; n++)
+            {
+                inOffsets[n + 1] += inOffsets[n];
+            }
+            inEdges = new int[edges];
+            int[] fill = Arrays.copyOf(inOffsets, nodes);
+            for (int e = 0; e < edges; e++)
+            {
+                inEdges[fill[targets[e]]++] = e;
+            }
+        }
+
+        SearchGraph view(final RewardTable rewards)
+        {
+            return new SearchGraph()
+            {
+                @Override
+                public void expandIncoming(long[] nodes, int from, int to, Expansion[] out)
+                {
+                    for (int i = from; i < to; i++)
+                    {
+                        out[i].clear();
+                        if (nodes[i] < 0)
+                        {
+                            continue;
+                        }
+                        int n = (int) nodes[i];
+                        for (int j = inOffsets[n]; j < inOffsets[n + 1]; j++)
+                        {
+                            int e = inEdges[j];
+                            out[i].add(sources[e], e, rewards.cost(0, sources[e]));
+                        }
+                    }
+                }
+
+                @Override
+                public void expandOutgoing(long[] nodes, int from, int to, Expansion[] out)
+                {
+                    for (int i = from; i < to; i++)
+                    {
+                        out[i].clear();
+                        if (nodes[i] < 0)
+                        {
+                            continue;
+                        }
+                        int n = (int) nodes[i];
+                        for (int e = outOffsets[n]; e < outOffsets[n + 1]; e++)
+                        {
+                            out[i].add(targets[e], e, rewards.cost(0, n));
+                        }
+                    }
+                }
+
+                @Override
+                public long startNode(long edge)
+                {
+                    return sources[(int) edge];
+                }
+
+                @Override
+                public long endNode(long edge)
+                {
+                    return targets[(int) edge];
+                }
+
+                @Override
+                public long cost(long edge)
+                {
+                    return rewards.cost(0, targets[(int) edge]);
+                }
+
+                @Override
+                public long relationshipId(long edge)
+                {
+                    return edge;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package preferencepaths;
+
+/**
+ * Lets another thread stop a running query. The search polls the token every
+ * few hundred iterations, together with its clock, and returns the skyline it
+ * has so far. One token may be shared by several queries to cancel them all.
+ */
+public class CancellationToken
+{
+    private volatile boolean cancelled;
+
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+}
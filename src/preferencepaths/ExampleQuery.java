@@ -1,6 +1,10 @@
+package preferencepaths;
+
 import java.io.IOException;
 import java.util.ArrayList;
 
+import edu.sdsc.scigraph.internal.reachability.ReachabilityIndex;
+
 
 public class ExampleQuery {
     
@@ -9,7 +13,7 @@ public class ExampleQuery {
         PreferencePaths db = new PreferencePaths();
         db.createDb();
         
-        ReachabilityIndex index = new ReachabilityIndex(graphDb);
+        ReachabilityIndex index = new ReachabilityIndex(db.getGraphDb());
         if (!index.indexExists()) 
         {
             index.createIndex(); 
@@ -25,16 +29,17 @@ public class ExampleQuery {
         ArrayList<String> excludeQueries = new ArrayList<String>();
         excludeQueries.add("match ()-[r:ReplyOf]->() retun type(r) limit 1");
           
-        long startTime = System.currentTimeMillis();
-        
         db.setReachabilityIndex(index);
-        db.preferencePathQuery(startNodesQuery, endNodesQuery, preferenceQueries, excludeQueries, index);
+        
+        // One cold run, JIT warm-up included; see bench/ for steady state numbers
+        long startTime = System.nanoTime();
+        
+        db.preferencePathQuery(startNodesQuery, endNodesQuery, preferenceQueries, excludeQueries);
 
-        long endTime = System.currentTimeMillis();
-        long elapsed = endTime - startTime;
+        long elapsed = (System.nanoTime() - startTime) / 1000000;
         long minutes = elapsed / (1000 * 60);
-        long seconds = (elapsed / 1000) - (minutes * 60);
-        long tenths = (elapsed / 100) - (seconds * 10);
+        long seconds = (elapsed / 1000) % 60;
+        long tenths = (elapsed / 100) % 10;
         System.out.println("\nTotal execution took " + minutes + " m " + seconds + "." + tenths + " s \n");
 
         db.shutDown();
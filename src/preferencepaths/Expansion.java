@@ -0,0 +1,55 @@
+package preferencepaths;
+
+import java.util.Arrays;
+
+
+/**
+ * Incoming or outgoing edges of one expanded node: the neighbour id, the graph's handle of
+ * the edge and its packed cost. Buffers are reused from expansion to expansion.
+ */
+public class Expansion
+{
+    private long[] nodes = new long[16];
+    private long[] edges = new long[16];
+    private long[] costs = new long[16];
+    private int size;
+
+    public int size()
+    {
+        return size;
+    }
+
+    public long node(int i)
+    {
+        return nodes[i];
+    }
+
+    public long edge(int i)
+    {
+        return edges[i];
+    }
+
+    public long cost(int i)
+    {
+        return costs[i];
+    }
+
+    public void clear()
+    {
+        size = 0;
+    }
+
+    public void add(long node, long edge, long cost)
+    {
+        if (size == nodes.length)
+        {
+            nodes = Arrays.copyOf(nodes, size << 1);
+            edges = Arrays.copyOf(edges, size << 1);
+            costs = Arrays.copyOf(costs, size << 1);
+        }
+        nodes[size] = node;
+        edges[size] = edge;
+        costs[size] = cost;
+        size++;
+    }
+}
@@ -0,0 +1,585 @@
+package preferencepaths;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+
+/**
+ * Copy of the graph in compressed sparse row form, holding only what the
+ * preference path search reads. Node ids are kept sorted so a node's index is a
+ * binary search away, and the incoming edges of index i occupy positions
+ * offsets[i] to offsets[i + 1] of the edge arrays, which store the index of the
+ * start node, an int-encoded relationship type and the Neo4j relationship id.
+ * An edge position is the edge handle used by the search.
+ *
+ * A snapshot is either loaded from the database into heap arrays, or mapped
+ * read-only from a file written by {@link #write}, in which case the arrays are
+ * views on the page cache and nothing is copied. The file also keeps the first
+ * label of every node and the results of the seed and preference queries it
+ * was exported with, so queries can run on it without opening Neo4j.
+ */
+public class GraphSnapshot
+{
+    private static final int MAGIC = 0x50505348;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+
+    private final LongBuffer nodeIds;
+    private final IntBuffer offsets;
+    private final IntBuffer sources;
+    private final IntBuffer types;
+    private final LongBuffer relationshipIds;
+    private final IntBuffer labels;
+    private final String[] typeNames;
+    private final String[] labelNames;
+    private final HashMap<String, String[]> queryResults;
+
+    // Outgoing index, built on the first forward expansion
+    private int[] outEdges;
+    private int[] outTargets;
+    private volatile int[] outOffsets;
+
+    private GraphSnapshot(LongBuffer nodeIds, IntBuffer offsets, IntBuffer sources, IntBuffer types, LongBuffer relationshipIds, IntBuffer labels,
+            String[] typeNames, String[] labelNames, HashMap<String, String[]> queryResults)
+    {
+        this.nodeIds = nodeIds;
+        this.offsets = offsets;
+        this.sources = sources;
+        this.types = types;
+        this.relationshipIds = relationshipIds;
+        this.labels = labels;
+        this.typeNames = typeNames;
+        this.labelNames = labelNames;
+        this.queryResults = queryResults;
+    }
+
+    /**
+     * Loads every node and relationship of the database into a heap snapshot, in
+     * two passes over the relationships: one counting the incoming degrees, one
+     * filling the edge arrays. The given Cypher queries are run and their results
+     * kept with the snapshot.
+     */
+    public static GraphSnapshot load(GraphDatabaseService graphDb, Iterable<String> queries)
+    {
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            GlobalGraphOperations operations = GlobalGraphOperations.at(graphDb);
+
+            long[] nodeIds = new long[1024];
+            int nodeCount = 0;
+            for (Node n : operations.getAllNodes())
+            {
+                if (nodeCount == nodeIds.length)
+                {
+                    nodeIds = Arrays.copyOf(nodeIds, nodeCount << 1);
+                }
+                nodeIds[nodeCount++] = n.getId();
+            }
+            nodeIds = Arrays.copyOf(nodeIds, nodeCount);
+            Arrays.sort(nodeIds);
+
+            int[] labels = new int[nodeCount];
+            HashMap<String, Integer> labelCodes = new HashMap<String, Integer>();
+            ArrayList<String> labelNames = new ArrayList<String>();
+            for (int i = 0; i < nodeCount; i++)
+            {
+                Iterator<Label> it = graphDb.getNodeById(nodeIds[i]).getLabels().iterator();
+                labels[i] = it.hasNext() ? code(it.next().name(), labelCodes, labelNames) : -1;
+            }
+
+            int[] offsets = new int[nodeCount + 1];
+            for (Relationship r : operations.getAllRelationships())
+            {
+                offsets[Arrays.binarySearch(nodeIds, r.getEndNode().getId()) + 1]++;
+            }
+            for (int i = 0; i < nodeCount; i++)
+            {
+                offsets[i + 1] += offsets[i];
+            }
+
+            int edgeCount = offsets[nodeCount];
+            int[] sources = new int[edgeCount];
+            int[] types = new int[edgeCount];
+            long[] relationshipIds = new long[edgeCount];
+            int[] next = Arrays.copyOf(offsets, nodeCount);
+            HashMap<String, Integer> typeCodes = new HashMap<String, Integer>();
+            ArrayList<String> typeNames = new ArrayList<String>();
+            for (Relationship r : operations.getAllRelationships())
+            {
+                int e = next[Arrays.binarySearch(nodeIds, r.getEndNode().getId())]++;
+                sources[e] = Arrays.binarySearch(nodeIds, r.getStartNode().getId());
+                types[e] = code(r.getType().name(), typeCodes, typeNames);
+                relationshipIds[e] = r.getId();
+            }
+
+            HashMap<String, String[]> queryResults = new HashMap<String, String[]>();
+            for (String query : queries)
+            {
+                queryResults.put(query, runQuery(graphDb, query));
+            }
+
+            tx.success();
+            return new GraphSnapshot(LongBuffer.wrap(nodeIds), IntBuffer.wrap(offsets), IntBuffer.wrap(sources), IntBuffer.wrap(types),
+                    LongBuffer.wrap(relationshipIds), IntBuffer.wrap(labels), typeNames.toArray(new String[typeNames.size()]),
+                    labelNames.toArray(new String[labelNames.size()]), queryResults);
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+
+    /**
+     * Writes the snapshot to a file that {@link #map} can open. The arrays come
+     * first, longs before ints so every section stays aligned, followed by the
+     * type and label names and the stored query results.
+     */
+    public void write(File file) throws IOException
+    {
+        int nodeCount = nodeCount();
+        int edgeCount = edgeCount();
+        long tail = HEADER_SIZE + 8L * nodeCount + 8L * edgeCount + 4L * (nodeCount + 1) + 8L * edgeCount + 4L * nodeCount;
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nodeCount);
+            out.writeInt(edgeCount);
+            out.writeLong(tail);
+            for (int i = 0; i < nodeCount; i++)
+            {
+                out.writeLong(nodeIds.get(i));
+            }
+            for (int i = 0; i < edgeCount; i++)
+            {
+                out.writeLong(relationshipIds.get(i));
+            }
+            for (int i = 0; i <= nodeCount; i++)
+            {
+                out.writeInt(offsets.get(i));
+            }
+            for (int i = 0; i < edgeCount; i++)
+            {
+                out.writeInt(sources.get(i));
+            }
+            for (int i = 0; i < edgeCount; i++)
+            {
+                out.writeInt(types.get(i));
+            }
+            for (int i = 0; i < nodeCount; i++)
+            {
+                out.writeInt(labels.get(i));
+            }
+
+            writeStrings(out, typeNames);
+            writeStrings(out, labelNames);
+            out.writeInt(queryResults.size());
+            for (Entry<String, String[]> entry : queryResults.entrySet())
+            {
+                out.writeUTF(entry.getKey());
+                writeStrings(out, entry.getValue());
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Maps a snapshot file read-only. Each array section is mapped on its own,
+     * so sections may each grow up to the 2 GB limit of a mapping.
+     */
+    public static GraphSnapshot map(File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+            {
+                throw new IOException("Not a preference paths snapshot: " + file);
+            }
+            int nodeCount = header.getInt();
+            int edgeCount = header.getInt();
+            long tail = header.getLong();
+
+            long position = HEADER_SIZE;
+            LongBuffer nodeIds = channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * nodeCount).asLongBuffer();
+            position += 8L * nodeCount;
+            LongBuffer relationshipIds = channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * edgeCount).asLongBuffer();
+            position += 8L * edgeCount;
+            IntBuffer offsets = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * (nodeCount + 1)).asIntBuffer();
+            position += 4L * (nodeCount + 1);
+            IntBuffer sources = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * edgeCount).asIntBuffer();
+            position += 4L * edgeCount;
+            IntBuffer types = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * edgeCount).asIntBuffer();
+            position += 4L * edgeCount;
+            IntBuffer labels = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * nodeCount).asIntBuffer();
+
+            channel.position(tail);
+            DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+            String[] typeNames = readStrings(in);
+            String[] labelNames = readStrings(in);
+            HashMap<String, String[]> queryResults = new HashMap<String, String[]>();
+            int queries = in.readInt();
+            for (int i = 0; i < queries; i++)
+            {
+                String query = in.readUTF();
+                queryResults.put(query, readStrings(in));
+            }
+
+            return new GraphSnapshot(nodeIds, offsets, sources, types, relationshipIds, labels, typeNames, labelNames, queryResults);
+        }
+        finally
+        {
+            // Mappings stay valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    public int nodeCount()
+    {
+        return nodeIds.capacity();
+    }
+
+    public int edgeCount()
+    {
+        return sources.capacity();
+    }
+
+    public long nodeIdAt(int index)
+    {
+        return nodeIds.get(index);
+    }
+
+    /**
+     * Returns the number of incoming and outgoing edges of the node at an index.
+     */
+    public int degreeAt(int index)
+    {
+        if (outOffsets == null)
+        {
+            buildOutgoing();
+        }
+        return offsets.get(index + 1) - offsets.get(index) + outOffsets[index + 1] - outOffsets[index];
+    }
+
+    /**
+     * Breadth first hop distances between the node at an index and every node,
+     * following outgoing edges for the distances from it or incoming edges for
+     * the distances to it. Nodes out of reach get -1.
+     */
+    public int[] hopDistances(int from, boolean outgoing)
+    {
+        if (outOffsets == null)
+        {
+            buildOutgoing();
+        }
+        int[] distances = new int[nodeCount()];
+        Arrays.fill(distances, -1);
+        int[] queue = new int[distances.length];
+        int head = 0;
+        int tail = 0;
+        distances[from] = 0;
+        queue[tail++] = from;
+        while (head < tail)
+        {
+            int n = queue[head++];
+            int end = outgoing ? outOffsets[n + 1] : offsets.get(n + 1);
+            for (int k = outgoing ? outOffsets[n] : offsets.get(n); k < end; k++)
+            {
+                int m = outgoing ? outTargets[k] : sources.get(k);
+                if (distances[m] < 0)
+                {
+                    distances[m] = distances[n] + 1;
+                    queue[tail++] = m;
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Returns the stored result column values of a query, or null if the query
+     * was not exported with the snapshot.
+     */
+    public String[] getQueryResult(String query)
+    {
+        return queryResults.get(query);
+    }
+
+    /**
+     * Returns the first label of a node, or null if it has none.
+     */
+    public String getLabel(long node)
+    {
+        int code = labels.get(index(node));
+        return code < 0 ? null : labelNames[code];
+    }
+
+    /**
+     * Returns the type of the relationship with the given id ending in node.
+     */
+    public String getRelationshipType(long node, long relationshipId)
+    {
+        int n = index(node);
+        for (int e = offsets.get(n); e < offsets.get(n + 1); e++)
+        {
+            if (relationshipIds.get(e) == relationshipId)
+            {
+                return typeNames[types.get(e)];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a search graph over the snapshot with the rewards of one query.
+     * Relationship type rewards are resolved to an array indexed by type code.
+     */
+    public SearchGraph view(RewardTable rewards)
+    {
+        return new View(rewards, rewards.typeRewards(typeNames));
+    }
+
+    /**
+     * Builds the outgoing edges of every node index as a second CSR over the
+     * positions of the incoming edge arrays, with the index of each end node.
+     */
+    private synchronized void buildOutgoing()
+    {
+        if (outOffsets != null)
+        {
+            return;
+        }
+        int nodeCount = nodeIds.capacity();
+        int edgeCount = sources.capacity();
+        int[] starts = new int[nodeCount + 1];
+        for (int e = 0; e < edgeCount; e++)
+        {
+            starts[sources.get(e) + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++)
+        {
+            starts[i + 1] += starts[i];
+        }
+        int[] cursors = Arrays.copyOf(starts, nodeCount);
+        outEdges = new int[edgeCount];
+        outTargets = new int[edgeCount];
+        for (int t = 0; t < nodeCount; t++)
+        {
+            int end = offsets.get(t + 1);
+            for (int e = offsets.get(t); e < end; e++)
+            {
+                int k = cursors[sources.get(e)]++;
+                outEdges[k] = e;
+                outTargets[k] = t;
+            }
+        }
+        outOffsets = starts;
+    }
+
+    private int index(long node)
+    {
+        int lo = 0;
+        int hi = nodeIds.capacity() - 1;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            long id = nodeIds.get(mid);
+            if (id < node)
+            {
+                lo = mid + 1;
+            }
+            else if (id > node)
+            {
+                hi = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Index of the node whose incoming range contains the edge position.
+     */
+    private int target(int edge)
+    {
+        int lo = 0;
+        int hi = nodeIds.capacity() - 1;
+        while (lo < hi)
+        {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets.get(mid) <= edge)
+            {
+                lo = mid;
+            }
+            else
+            {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    private static int code(String name, HashMap<String, Integer> codes, ArrayList<String> names)
+    {
+        Integer code = codes.get(name);
+        if (code == null)
+        {
+            code = names.size();
+            codes.put(name, code);
+            names.add(name);
+        }
+        return code;
+    }
+
+    private static String[] runQuery(GraphDatabaseService graphDb, String query)
+    {
+        Result result = graphDb.execute(query);
+        ArrayList<String> values = new ArrayList<String>();
+        while (result.hasNext())
+        {
+            Map<String, Object> row = result.next();
+            for (Object value : row.values())
+            {
+                values.add(String.valueOf(value));
+            }
+        }
+        return values.toArray(new String[values.size()]);
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] strings) throws IOException
+    {
+        out.writeInt(strings.length);
+        for (String s : strings)
+        {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException
+    {
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++)
+        {
+            strings[i] = in.readUTF();
+        }
+        return strings;
+    }
+
+    private class View implements SearchGraph
+    {
+        private final RewardTable rewards;
+        private final int[] typeRewards;
+
+        View(RewardTable rewards, int[] typeRewards)
+        {
+            this.rewards = rewards;
+            this.typeRewards = typeRewards;
+        }
+
+        @Override
+        public void expandIncoming(long[] nodes, int from, int to, Expansion[] out)
+        {
+            for (int i = from; i < to; i++)
+            {
+                Expansion expansion = out[i];
+                expansion.clear();
+                int n = nodes[i] < 0 ? -1 : index(nodes[i]);
+                if (n < 0)
+                {
+                    continue;
+                }
+                int end = offsets.get(n + 1);
+                for (int e = offsets.get(n); e < end; e++)
+                {
+                    long m = nodeIds.get(sources.get(e));
+                    expansion.add(m, e, rewards.cost(typeRewards[types.get(e)], m));
+                }
+            }
+        }
+
+        @Override
+        public void expandOutgoing(long[] nodes, int from, int to, Expansion[] out)
+        {
+            if (outOffsets == null)
+            {
+                buildOutgoing();
+            }
+            for (int i = from; i < to; i++)
+            {
+                Expansion expansion = out[i];
+                expansion.clear();
+                int n = nodes[i] < 0 ? -1 : index(nodes[i]);
+                if (n < 0)
+                {
+                    continue;
+                }
+                int end = outOffsets[n + 1];
+                for (int k = outOffsets[n]; k < end; k++)
+                {
+                    int e = outEdges[k];
+                    expansion.add(nodeIds.get(outTargets[k]), e, rewards.cost(typeRewards[types.get(e)], nodes[i]));
+                }
+            }
+        }
+
+        @Override
+        public long startNode(long edge)
+        {
+            return nodeIds.get(sources.get((int) edge));
+        }
+
+        @Override
+        public long endNode(long edge)
+        {
+            return nodeIds.get(target((int) edge));
+        }
+
+        @Override
+        public long cost(long edge)
+        {
+            int e = (int) edge;
+            return rewards.cost(typeRewards[types.get(e)], nodeIds.get(target(e)));
+        }
+
+        @Override
+        public long relationshipId(long edge)
+        {
+            return relationshipIds.get((int) edge);
+        }
+    }
+}
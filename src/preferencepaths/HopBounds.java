@@ -0,0 +1,91 @@
+package preferencepaths;
+
+/**
+ * Admissible lower bounds on the number of hops between a node set and any
+ * other node, from a {@link LandmarkIndex}. For every landmark L and set node s,
+ * d(s, m) >= d(L, m) - d(L, s) and d(s, m) >= d(s, L) - d(m, L), so the set
+ * extremes of d(L, s) and d(s, L) are computed once per query and each node
+ * bound takes one pass over the landmarks. Bounds towards the set use the same
+ * inequalities with the directions swapped.
+ */
+public class HopBounds
+{
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final int UNUSABLE = -1;
+
+    private final LandmarkIndex index;
+    private final boolean fromSet;
+    private final int[] farthest;
+    private final int[] nearest;
+
+    /**
+     * Bounds on the hops from the set to a node, or from a node to the set when
+     * fromSet is false.
+     */
+    public HopBounds(LandmarkIndex index, long[] set, boolean fromSet)
+    {
+        this.index = index;
+        this.fromSet = fromSet;
+        int landmarks = index.landmarkCount();
+        farthest = new int[landmarks];
+        nearest = new int[landmarks];
+        for (int l = 0; l < landmarks; l++)
+        {
+            int far = 0;
+            int near = LandmarkIndex.UNREACHED;
+            for (long n : set)
+            {
+                int i = index.index(n);
+                if (i < 0)
+                {
+                    // A node the index does not cover could be anywhere
+                    far = UNUSABLE;
+                    near = 0;
+                    break;
+                }
+                int d = index.distance(l, i, fromSet);
+                if (far != UNUSABLE)
+                {
+                    far = d >= LandmarkIndex.SATURATED ? UNUSABLE : Math.max(far, d);
+                }
+                near = Math.min(near, index.distance(l, i, !fromSet));
+            }
+            farthest[l] = set.length == 0 ? UNUSABLE : far;
+            nearest[l] = near;
+        }
+    }
+
+    /**
+     * Returns a lower bound on the hops between the set and a node, or
+     * UNREACHABLE if no path joins them.
+     */
+    public int hops(long node)
+    {
+        int i = index.index(node);
+        if (i < 0)
+        {
+            return 0;
+        }
+        int bound = 0;
+        for (int l = 0; l < farthest.length; l++)
+        {
+            if (farthest[l] != UNUSABLE)
+            {
+                int d = index.distance(l, i, fromSet);
+                if (d == LandmarkIndex.UNREACHED)
+                {
+                    // The landmark reaches the whole set but not the node
+                    return UNREACHABLE;
+                }
+                bound = Math.max(bound, d - farthest[l]);
+            }
+            int d = index.distance(l, i, !fromSet);
+            if (nearest[l] != LandmarkIndex.UNREACHED && d < LandmarkIndex.SATURATED)
+            {
+                bound = Math.max(bound, nearest[l] - d);
+            }
+        }
+        return bound;
+    }
+}
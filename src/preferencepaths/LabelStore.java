@@ -0,0 +1,149 @@
+package preferencepaths;
+
+import java.util.Arrays;
+
+
+/**
+ * Per node search labels of the preference path query: lower bound, upper bound,
+ * the successor relationship of each bound and the number of hops of the upper
+ * bound successor chain. Nodes are keyed by their primitive id and every label
+ * lives in a dense slot of parallel arrays, so reading and updating a label
+ * neither boxes nor allocates. Nodes never written keep the initial bounds
+ * without being inserted.
+ */
+public class LabelStore
+{
+    public static final long NO_RELATIONSHIP = -1;
+
+    private final int initialLowerBound;
+    private final int initialUpperBound;
+
+    private final LongIntMap slots;
+    private long[] nodes;
+    private int[] lowerBounds;
+    private int[] upperBounds;
+    private long[] lowerSuccessors;
+    private long[] upperSuccessors;
+    private int[] upperHops;
+    private int size;
+
+    public LabelStore(int expectedSize, int initialLowerBound, int initialUpperBound)
+    {
+        this.initialLowerBound = initialLowerBound;
+        this.initialUpperBound = initialUpperBound;
+        int capacity = Math.max(16, expectedSize);
+        slots = new LongIntMap(capacity);
+        nodes = new long[capacity];
+        lowerBounds = new int[capacity];
+        upperBounds = new int[capacity];
+        lowerSuccessors = new long[capacity];
+        upperSuccessors = new long[capacity];
+        upperHops = new int[capacity];
+    }
+
+    /**
+     * Returns the slot of a node, or -1 if the node has no label yet.
+     */
+    public int slot(long node)
+    {
+        return slots.get(node, -1);
+    }
+
+    /**
+     * Returns the slot of a node, creating it with the initial bounds if needed.
+     */
+    public int insert(long node)
+    {
+        int slot = slots.get(node, -1);
+        if (slot < 0)
+        {
+            if (size == nodes.length)
+            {
+                grow();
+            }
+            slot = size++;
+            nodes[slot] = node;
+            lowerBounds[slot] = initialLowerBound;
+            upperBounds[slot] = initialUpperBound;
+            lowerSuccessors[slot] = NO_RELATIONSHIP;
+            upperSuccessors[slot] = NO_RELATIONSHIP;
+            upperHops[slot] = 0;
+            slots.put(node, slot);
+        }
+        return slot;
+    }
+
+    public int lowerBound(long node)
+    {
+        int slot = slot(node);
+        return slot < 0 ? initialLowerBound : lowerBounds[slot];
+    }
+
+    public int upperBound(long node)
+    {
+        int slot = slot(node);
+        return slot < 0 ? initialUpperBound : upperBounds[slot];
+    }
+
+    public long successor(long node, boolean upper)
+    {
+        int slot = slot(node);
+        if (slot < 0)
+        {
+            return NO_RELATIONSHIP;
+        }
+        return upper ? upperSuccessors[slot] : lowerSuccessors[slot];
+    }
+
+    public long node(int slot)
+    {
+        return nodes[slot];
+    }
+
+    public int lowerBoundAt(int slot)
+    {
+        return lowerBounds[slot];
+    }
+
+    public int upperBoundAt(int slot)
+    {
+        return upperBounds[slot];
+    }
+
+    public void setLowerBound(int slot, int bound, long successor)
+    {
+        lowerBounds[slot] = bound;
+        lowerSuccessors[slot] = successor;
+    }
+
+    /**
+     * Returns the number of edges on the upper bound successor chain of a slot.
+     */
+    public int upperHopsAt(int slot)
+    {
+        return upperHops[slot];
+    }
+
+    public void setUpperBound(int slot, int bound, long successor, int hops)
+    {
+        upperBounds[slot] = bound;
+        upperSuccessors[slot] = successor;
+        upperHops[slot] = hops;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    private void grow()
+    {
+        int capacity = nodes.length << 1;
+        nodes = Arrays.copyOf(nodes, capacity);
+        lowerBounds = Arrays.copyOf(lowerBounds, capacity);
+        upperBounds = Arrays.copyOf(upperBounds, capacity);
+        lowerSuccessors = Arrays.copyOf(lowerSuccessors, capacity);
+        upperSuccessors = Arrays.copyOf(upperSuccessors, capacity);
+        upperHops = Arrays.copyOf(upperHops, capacity);
+    }
+}
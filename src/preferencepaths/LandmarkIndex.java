@@ -0,0 +1,254 @@
+package preferencepaths;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+
+/**
+ * Hop distances between a few landmark nodes and every node of the graph, from
+ * which {@link HopBounds} derives admissible hop lower bounds by the triangle
+ * inequality. Each distance takes one unsigned byte: values up to 253 are exact,
+ * 254 stands for 254 or more and 255 for out of reach.
+ *
+ * The index is built offline from a snapshot and kept in a file next to the
+ * database, mapped read-only when opened. It describes the graph it was built
+ * from, so it must be rebuilt once relationships are added; nodes created
+ * afterwards are simply not covered. The file records the node and
+ * relationship counts of that graph, and map refuses it once the counts of the
+ * graph differ. Changes that keep both counts go unnoticed.
+ */
+public class LandmarkIndex
+{
+    public static final int SATURATED = 254;
+    public static final int UNREACHED = 255;
+
+    private static final int MAGIC = 0x5050484C;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 24;
+
+    // Landmarks are kept more than this many hops away from each other
+    private static final int MIN_SPREAD = 2;
+
+    private final LongBuffer nodeIds;
+    private final long edgeCount;
+    private final ByteBuffer[] fromLandmark;
+    private final ByteBuffer[] toLandmark;
+
+    private LandmarkIndex(LongBuffer nodeIds, long edgeCount, ByteBuffer[] fromLandmark, ByteBuffer[] toLandmark)
+    {
+        this.nodeIds = nodeIds;
+        this.edgeCount = edgeCount;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * Picks up to count landmarks, highest degree first, skipping nodes close to
+     * a landmark already picked, and runs a forward and a backward breadth first
+     * search from each over the snapshot.
+     */
+    public static LandmarkIndex build(final GraphSnapshot graph, int count)
+    {
+        int nodeCount = graph.nodeCount();
+        long[] nodeIds = new long[nodeCount];
+        final int[] degrees = new int[nodeCount];
+        Integer[] candidates = new Integer[nodeCount];
+        for (int i = 0; i < nodeCount; i++)
+        {
+            nodeIds[i] = graph.nodeIdAt(i);
+            degrees[i] = graph.degreeAt(i);
+            candidates[i] = i;
+        }
+        Arrays.sort(candidates, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer a, Integer b)
+            {
+                return degrees[b] - degrees[a];
+            }
+        });
+
+        ArrayList<ByteBuffer> from = new ArrayList<ByteBuffer>();
+        ArrayList<ByteBuffer> to = new ArrayList<ByteBuffer>();
+        for (int c = 0; c < nodeCount && from.size() < count; c++)
+        {
+            int landmark = candidates[c];
+            if (nearLandmark(landmark, from, to))
+            {
+                continue;
+            }
+            from.add(ByteBuffer.wrap(encode(graph.hopDistances(landmark, true))));
+            to.add(ByteBuffer.wrap(encode(graph.hopDistances(landmark, false))));
+        }
+        return new LandmarkIndex(LongBuffer.wrap(nodeIds), graph.edgeCount(), from.toArray(new ByteBuffer[from.size()]), to.toArray(new ByteBuffer[to.size()]));
+    }
+
+    /**
+     * Writes the index to a file that {@link #map} can open: the counts of the
+     * graph, the sorted node ids, then the distances from and to each landmark.
+     */
+    public void write(File file) throws IOException
+    {
+        int nodeCount = nodeCount();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nodeCount);
+            out.writeInt(landmarkCount());
+            out.writeLong(edgeCount);
+            for (int i = 0; i < nodeCount; i++)
+            {
+                out.writeLong(nodeIds.get(i));
+            }
+            for (int l = 0; l < landmarkCount(); l++)
+            {
+                for (int i = 0; i < nodeCount; i++)
+                {
+                    out.writeByte(fromLandmark[l].get(i));
+                }
+                for (int i = 0; i < nodeCount; i++)
+                {
+                    out.writeByte(toLandmark[l].get(i));
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Maps an index file read-only, checking that it was built from a graph with
+     * the given node and relationship counts.
+     */
+    public static LandmarkIndex map(File file, long graphNodes, long graphEdges) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+            {
+                throw new IOException("Not a preference paths landmark index: " + file);
+            }
+            int nodeCount = header.getInt();
+            int landmarkCount = header.getInt();
+            long edgeCount = header.getLong();
+            if (nodeCount != graphNodes || edgeCount != graphEdges)
+            {
+                throw new IOException("Stale landmark index " + file + ": built for " + nodeCount + " nodes and " + edgeCount
+                        + " relationships, the graph has " + graphNodes + " and " + graphEdges);
+            }
+
+            long position = HEADER_SIZE;
+            LongBuffer nodeIds = channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * nodeCount).asLongBuffer();
+            position += 8L * nodeCount;
+            ByteBuffer[] fromLandmark = new ByteBuffer[landmarkCount];
+            ByteBuffer[] toLandmark = new ByteBuffer[landmarkCount];
+            for (int l = 0; l < landmarkCount; l++)
+            {
+                fromLandmark[l] = channel.map(FileChannel.MapMode.READ_ONLY, position, nodeCount);
+                position += nodeCount;
+                toLandmark[l] = channel.map(FileChannel.MapMode.READ_ONLY, position, nodeCount);
+                position += nodeCount;
+            }
+            return new LandmarkIndex(nodeIds, edgeCount, fromLandmark, toLandmark);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    public int nodeCount()
+    {
+        return nodeIds.capacity();
+    }
+
+    /**
+     * Relationships of the graph the index was built from.
+     */
+    public long edgeCount()
+    {
+        return edgeCount;
+    }
+
+    public int landmarkCount()
+    {
+        return fromLandmark.length;
+    }
+
+    /**
+     * Returns the index of a node, or -1 if the index does not cover it.
+     */
+    public int index(long node)
+    {
+        int lo = 0;
+        int hi = nodeIds.capacity() - 1;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            long id = nodeIds.get(mid);
+            if (id < node)
+            {
+                lo = mid + 1;
+            }
+            else if (id > node)
+            {
+                hi = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Encoded hop distance from a landmark to the node at an index, or from the
+     * node to the landmark when fromLandmark is false.
+     */
+    public int distance(int landmark, int index, boolean fromLandmark)
+    {
+        ByteBuffer distances = fromLandmark ? this.fromLandmark[landmark] : toLandmark[landmark];
+        return distances.get(index) & 0xFF;
+    }
+
+    private static boolean nearLandmark(int node, ArrayList<ByteBuffer> from, ArrayList<ByteBuffer> to)
+    {
+        for (int l = 0; l < from.size(); l++)
+        {
+            if ((from.get(l).get(node) & 0xFF) <= MIN_SPREAD || (to.get(l).get(node) & 0xFF) <= MIN_SPREAD)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] encode(int[] distances)
+    {
+        byte[] encoded = new byte[distances.length];
+        for (int i = 0; i < distances.length; i++)
+        {
+            int d = distances[i] < 0 ? UNREACHED : Math.min(distances[i], SATURATED);
+            encoded[i] = (byte) d;
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,128 @@
+package preferencepaths;
+
+import java.util.Arrays;
+
+
+/**
+ * Open addressing hash map from primitive long keys to primitive int values.
+ * Lookups never box or allocate; the tables only grow on insertion.
+ */
+public class LongIntMap
+{
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public LongIntMap(int expectedSize)
+    {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public int get(long key, int missing)
+    {
+        int i = index(key);
+        while (true)
+        {
+            long k = keys[i];
+            if (k == key)
+            {
+                return values[i];
+            }
+            if (k == EMPTY)
+            {
+                return missing;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    public boolean containsKey(long key)
+    {
+        int i = index(key);
+        while (true)
+        {
+            long k = keys[i];
+            if (k == key)
+            {
+                return true;
+            }
+            if (k == EMPTY)
+            {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    public void put(long key, int value)
+    {
+        int i = index(key);
+        while (true)
+        {
+            long k = keys[i];
+            if (k == key)
+            {
+                values[i] = value;
+                return;
+            }
+            if (k == EMPTY)
+            {
+                keys[i] = key;
+                values[i] = value;
+                if (++size >= resizeAt)
+                {
+                    rehash();
+                }
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private int index(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity)
+    {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash()
+    {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != EMPTY)
+            {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
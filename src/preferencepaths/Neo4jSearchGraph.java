@@ -0,0 +1,107 @@
+package preferencepaths;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+
+
+/**
+ * Search graph reading the embedded Neo4j store. Edge handles are relationship
+ * ids. Expansions open their own transaction, which nests into the caller's one
+ * on the query thread.
+ */
+public class Neo4jSearchGraph implements SearchGraph
+{
+    private final GraphDatabaseService graphDb;
+    private final RewardTable rewards;
+
+    public Neo4jSearchGraph(GraphDatabaseService graphDb, RewardTable rewards)
+    {
+        this.graphDb = graphDb;
+        this.rewards = rewards;
+    }
+
+    @Override
+    public void expandIncoming(long[] nodes, int from, int to, Expansion[] out)
+    {
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            for (int i = from; i < to; i++)
+            {
+                Expansion expansion = out[i];
+                expansion.clear();
+                if (nodes[i] < 0)
+                {
+                    continue;
+                }
+                Node n = graphDb.getNodeById(nodes[i]);
+                for (Relationship edge : n.getRelationships(Direction.INCOMING))
+                {
+                    long m = edge.getStartNode().getId();
+                    expansion.add(m, edge.getId(), rewards.cost(edge, m));
+                }
+            }
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+
+    @Override
+    public void expandOutgoing(long[] nodes, int from, int to, Expansion[] out)
+    {
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            for (int i = from; i < to; i++)
+            {
+                Expansion expansion = out[i];
+                expansion.clear();
+                if (nodes[i] < 0)
+                {
+                    continue;
+                }
+                Node n = graphDb.getNodeById(nodes[i]);
+                for (Relationship edge : n.getRelationships(Direction.OUTGOING))
+                {
+                    expansion.add(edge.getEndNode().getId(), edge.getId(), rewards.cost(edge, nodes[i]));
+                }
+            }
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+
+    @Override
+    public long startNode(long edge)
+    {
+        return graphDb.getRelationshipById(edge).getStartNode().getId();
+    }
+
+    @Override
+    public long endNode(long edge)
+    {
+        return graphDb.getRelationshipById(edge).getEndNode().getId();
+    }
+
+    @Override
+    public long cost(long edge)
+    {
+        Relationship rel = graphDb.getRelationshipById(edge);
+        return rewards.cost(rel, rel.getEndNode().getId());
+    }
+
+    @Override
+    public long relationshipId(long edge)
+    {
+        return edge;
+    }
+}
@@ -0,0 +1,197 @@
+package preferencepaths;
+
+import java.util.Arrays;
+
+
+/**
+ * Addressable binary min-heap over the slots of a {@link LabelStore}. The key of
+ * each entry is cached when the node is added or its bounds change, so sifting
+ * never goes back to the label store, and a changed key is restored in
+ * O(log n) without searching the heap.
+ *
+ * Two orderings are supported: by lower bound, or by lower bound minus upper
+ * bound, which favours nodes that are both close and rewarding. Equal keys are
+ * ordered by node id, so the pop order does not depend on the order nodes were
+ * added in.
+ */
+public class NodeHeap
+{
+    private static final int ABSENT = -1;
+
+    private final LabelStore labels;
+    private final boolean boundSpread;
+
+    private int[] heap;
+    private long[] keys;
+    private long[] nodes;
+    private int[] positions;
+    private int size;
+
+    public NodeHeap(LabelStore labels, boolean boundSpread, int initialCapacity)
+    {
+        this.labels = labels;
+        this.boundSpread = boundSpread;
+        int capacity = Math.max(16, initialCapacity);
+        heap = new int[capacity];
+        keys = new long[capacity];
+        nodes = new long[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, ABSENT);
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean contains(int slot)
+    {
+        return slot < positions.length && positions[slot] != ABSENT;
+    }
+
+    /**
+     * Adds the node in the given slot, or moves it to its new place if its bounds
+     * changed while it was already queued.
+     */
+    public void update(int slot)
+    {
+        long key = key(slot);
+        if (!contains(slot))
+        {
+            ensureCapacity(slot);
+            int i = size++;
+            place(slot, key, labels.node(slot), i);
+            siftUp(i);
+            return;
+        }
+        int i = positions[slot];
+        long old = keys[i];
+        keys[i] = key;
+        if (key < old)
+        {
+            siftUp(i);
+        }
+        else if (key > old)
+        {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Returns the slot with the smallest key without removing it.
+     */
+    public int peek()
+    {
+        return heap[0];
+    }
+
+    /**
+     * Removes and returns the slot with the smallest key.
+     */
+    public int poll()
+    {
+        int top = heap[0];
+        positions[top] = ABSENT;
+        size--;
+        if (size > 0)
+        {
+            move(size, 0);
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private long key(int slot)
+    {
+        long lb = labels.lowerBoundAt(slot);
+        if (boundSpread)
+        {
+            return lb - labels.upperBoundAt(slot);
+        }
+        return lb;
+    }
+
+    private void siftUp(int i)
+    {
+        int slot = heap[i];
+        long key = keys[i];
+        long node = nodes[i];
+        while (i > 0)
+        {
+            int parent = (i - 1) >>> 1;
+            if (!before(key, node, keys[parent], nodes[parent]))
+            {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        place(slot, key, node, i);
+    }
+
+    private void siftDown(int i)
+    {
+        int slot = heap[i];
+        long key = keys[i];
+        long node = nodes[i];
+        int half = size >>> 1;
+        while (i < half)
+        {
+            int child = (i << 1) + 1;
+            int right = child + 1;
+            if (right < size && before(keys[right], nodes[right], keys[child], nodes[child]))
+            {
+                child = right;
+            }
+            if (!before(keys[child], nodes[child], key, node))
+            {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        place(slot, key, node, i);
+    }
+
+    private static boolean before(long key, long node, long otherKey, long otherNode)
+    {
+        return key < otherKey || (key == otherKey && node < otherNode);
+    }
+
+    private void move(int from, int to)
+    {
+        heap[to] = heap[from];
+        keys[to] = keys[from];
+        nodes[to] = nodes[from];
+        positions[heap[to]] = to;
+    }
+
+    private void place(int slot, long key, long node, int i)
+    {
+        heap[i] = slot;
+        keys[i] = key;
+        nodes[i] = node;
+        positions[slot] = i;
+    }
+
+    private void ensureCapacity(int slot)
+    {
+        if (slot >= positions.length)
+        {
+            int old = positions.length;
+            positions = Arrays.copyOf(positions, Math.max(old << 1, slot + 1));
+            Arrays.fill(positions, old, positions.length, ABSENT);
+        }
+        if (size == heap.length)
+        {
+            heap = Arrays.copyOf(heap, size << 1);
+            keys = Arrays.copyOf(keys, size << 1);
+            nodes = Arrays.copyOf(nodes, size << 1);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package preferencepaths;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+
+/**
+ * Immutable compressed set of node ids. Ids are split into chunks of 65536 by
+ * their high bits, and each chunk is stored as a sorted array of its low 16 bits
+ * while it holds few ids, or as an 8 KB bitmap once the array would be larger.
+ * Chunks are indexed directly by their high bits, which suits the dense ids
+ * Neo4j hands out, so a lookup is one array access and either a bit test or a
+ * binary search over at most 4096 entries.
+ */
+public class NodeIdSet
+{
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    private static final int MAX_ARRAY_SIZE = 4096;
+
+    private final char[][] arrays;
+    private final long[][] bitmaps;
+    private final int size;
+
+    private NodeIdSet(char[][] arrays, long[][] bitmaps, int size)
+    {
+        this.arrays = arrays;
+        this.bitmaps = bitmaps;
+        this.size = size;
+    }
+
+    /**
+     * Builds the set of the first count ids, which are sorted in place. Negative
+     * ids are ignored.
+     */
+    public static NodeIdSet of(long[] ids, int count)
+    {
+        Arrays.sort(ids, 0, count);
+        int first = 0;
+        while (first < count && ids[first] < 0)
+        {
+            first++;
+        }
+        int chunks = first < count ? (int) (ids[count - 1] >>> CHUNK_BITS) + 1 : 0;
+        char[][] arrays = new char[chunks][];
+        long[][] bitmaps = new long[chunks][];
+        int size = 0;
+
+        int i = first;
+        while (i < count)
+        {
+            int chunk = (int) (ids[i] >>> CHUNK_BITS);
+            char[] lows = new char[MAX_ARRAY_SIZE];
+            long[] bitmap = null;
+            int n = 0;
+            long previous = -1;
+            for (; i < count && (ids[i] >>> CHUNK_BITS) == chunk; i++)
+            {
+                if (ids[i] == previous)
+                {
+                    continue;
+                }
+                previous = ids[i];
+                int low = (int) ids[i] & CHUNK_MASK;
+                if (bitmap == null && n == MAX_ARRAY_SIZE)
+                {
+                    bitmap = new long[1 << (CHUNK_BITS - 6)];
+                    for (int j = 0; j < n; j++)
+                    {
+                        bitmap[lows[j] >>> 6] |= 1L << lows[j];
+                    }
+                }
+                if (bitmap != null)
+                {
+                    bitmap[low >>> 6] |= 1L << low;
+                }
+                else
+                {
+                    lows[n] = (char) low;
+                }
+                n++;
+            }
+            if (bitmap != null)
+            {
+                bitmaps[chunk] = bitmap;
+            }
+            else
+            {
+                arrays[chunk] = Arrays.copyOf(lows, n);
+            }
+            size += n;
+        }
+        return new NodeIdSet(arrays, bitmaps, size);
+    }
+
+    public boolean contains(long id)
+    {
+        if (id < 0)
+        {
+            return false;
+        }
+        long chunk = id >>> CHUNK_BITS;
+        if (chunk >= arrays.length)
+        {
+            return false;
+        }
+        int low = (int) id & CHUNK_MASK;
+        long[] bitmap = bitmaps[(int) chunk];
+        if (bitmap != null)
+        {
+            return (bitmap[low >>> 6] & (1L << low)) != 0;
+        }
+        char[] lows = arrays[(int) chunk];
+        return lows != null && Arrays.binarySearch(lows, (char) low) >= 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Feeds the ids to the digest in a canonical form, so equal sets feed equal
+     * bytes: the size, then each chunk number with its array or bitmap.
+     */
+    public void update(MessageDigest digest)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + (1 << (CHUNK_BITS - 3)));
+        buffer.putInt(size);
+        for (int chunk = 0; chunk < arrays.length; chunk++)
+        {
+            if (bitmaps[chunk] != null)
+            {
+                buffer.putInt(chunk);
+                for (long word : bitmaps[chunk])
+                {
+                    buffer.putLong(word);
+                }
+            }
+            else if (arrays[chunk] != null)
+            {
+                buffer.putInt(chunk);
+                for (char low : arrays[chunk])
+                {
+                    buffer.putChar(low);
+                }
+            }
+            else
+            {
+                continue;
+            }
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+        buffer.flip();
+        digest.update(buffer);
+    }
+}
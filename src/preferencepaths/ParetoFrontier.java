@@ -0,0 +1,107 @@
+package preferencepaths;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Two criteria Pareto frontier of (length, reward) points, where a shorter length
+ * and a higher reward are better. The points are kept as a staircase sorted by
+ * length, on which rewards strictly increase, so the best reward available at or
+ * below a given length is found with one floor lookup. Dominance tests take
+ * O(log k) and inserts O(log k) plus the dominated points they evict.
+ */
+public class ParetoFrontier<T>
+{
+    private final TreeMap<Integer, Point<T>> points = new TreeMap<Integer, Point<T>>();
+
+    /**
+     * Returns true if some point is at least as short and at least as rewarding.
+     */
+    public boolean dominates(int length, int reward)
+    {
+        Map.Entry<Integer, Point<T>> floor = points.floorEntry(length);
+        return floor != null && floor.getValue().reward >= reward;
+    }
+
+    /**
+     * Returns true if some point other than (length, reward) itself is at least as
+     * short and at least as rewarding.
+     */
+    public boolean strictlyDominates(int length, int reward)
+    {
+        Map.Entry<Integer, Point<T>> floor = points.floorEntry(length);
+        if (floor == null)
+        {
+            return false;
+        }
+        int floorReward = floor.getValue().reward;
+        return floorReward > reward || (floorReward == reward && floor.getKey() < length);
+    }
+
+    /**
+     * Adds a point unless it is dominated, removing the points it dominates.
+     * Removed values are added to evicted when it is not null.
+     */
+    public boolean add(int length, int reward, T value, Collection<T> evicted)
+    {
+        if (dominates(length, reward))
+        {
+            return false;
+        }
+        Iterator<Point<T>> it = points.tailMap(length, true).values().iterator();
+        while (it.hasNext())
+        {
+            Point<T> point = it.next();
+            if (point.reward > reward)
+            {
+                break;
+            }
+            if (evicted != null)
+            {
+                evicted.add(point.value);
+            }
+            it.remove();
+        }
+        points.put(length, new Point<T>(reward, value));
+        return true;
+    }
+
+    public boolean isEmpty()
+    {
+        return points.isEmpty();
+    }
+
+    public int size()
+    {
+        return points.size();
+    }
+
+    /**
+     * Returns the values of the frontier ordered by increasing length.
+     */
+    public Collection<T> values()
+    {
+        ArrayList<T> values = new ArrayList<T>(points.size());
+        for (Point<T> point : points.values())
+        {
+            values.add(point.value);
+        }
+        return values;
+    }
+
+    private static class Point<T>
+    {
+        final int reward;
+        final T value;
+
+        Point(int reward, T value)
+        {
+            this.reward = reward;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package preferencepaths;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.neo4j.graphdb.Relationship;
+
+
+/**
+ * Stitches the legs of a sequence query into full paths. Leg paths are hashed
+ * by the id of their first node, so a path of one leg is matched with those of
+ * the next by one lookup on its last node. Leg paths that no chain of later
+ * legs completes are dropped up front, which lets the iterator enumerate the
+ * stitched paths lazily, depth first, without ever backtracking from a dead
+ * end: taking the first k costs k times the number of legs.
+ *
+ * Relationships are read while the join is built and while iterating, so both
+ * must happen inside a transaction.
+ */
+public class PathJoin implements Iterable<ArrayList<Relationship>>
+{
+    private final ArrayList<ArrayList<Relationship>> first;
+    private final ArrayList<HashMap<Long, ArrayList<ArrayList<Relationship>>>> byStart;
+
+    /**
+     * Joins the paths of consecutive legs. Every leg path must have at least one
+     * relationship.
+     */
+    public PathJoin(ArrayList<ArrayList<ArrayList<Relationship>>> legs)
+    {
+        int count = legs.size();
+        byStart = new ArrayList<HashMap<Long, ArrayList<ArrayList<Relationship>>>>();
+        for (int i = 0; i < count; i++)
+        {
+            byStart.add(null);
+        }
+
+        // Index the legs from the last one, keeping the paths the next leg continues
+        HashMap<Long, ArrayList<ArrayList<Relationship>>> next = null;
+        ArrayList<ArrayList<Relationship>> kept = new ArrayList<ArrayList<Relationship>>();
+        for (int i = count - 1; i >= 0; i--)
+        {
+            HashMap<Long, ArrayList<ArrayList<Relationship>>> index = new HashMap<Long, ArrayList<ArrayList<Relationship>>>();
+            kept = new ArrayList<ArrayList<Relationship>>();
+            for (ArrayList<Relationship> path : legs.get(i))
+            {
+                if (next != null && !next.containsKey(endNode(path)))
+                {
+                    continue;
+                }
+                kept.add(path);
+                ArrayList<ArrayList<Relationship>> paths = index.get(startNode(path));
+                if (paths == null)
+                {
+                    paths = new ArrayList<ArrayList<Relationship>>();
+                    index.put(startNode(path), paths);
+                }
+                paths.add(path);
+            }
+            byStart.set(i, index);
+            next = index;
+        }
+        first = count == 0 ? new ArrayList<ArrayList<Relationship>>() : kept;
+    }
+
+    @Override
+    public Iterator<ArrayList<Relationship>> iterator()
+    {
+        return new Iterator<ArrayList<Relationship>>()
+        {
+            // Candidate paths and the position taken in each leg
+            private final ArrayList<ArrayList<ArrayList<Relationship>>> candidates = new ArrayList<ArrayList<ArrayList<Relationship>>>();
+            private final int[] positions = new int[byStart.size()];
+            private boolean hasNext = !first.isEmpty();
+
+            {
+                if (hasNext)
+                {
+                    candidates.add(first);
+                    descend();
+                }
+            }
+
+            @Override
+            public boolean hasNext()
+            {
+                return hasNext;
+            }
+
+            @Override
+            public ArrayList<Relationship> next()
+            {
+                if (!hasNext)
+                {
+                    throw new NoSuchElementException();
+                }
+                ArrayList<Relationship> path = new ArrayList<Relationship>();
+                for (int i = 0; i < candidates.size(); i++)
+                {
+                    path.addAll(candidates.get(i).get(positions[i]));
+                }
+                advance();
+                return path;
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            // Fills the legs after the last chosen one with their first candidate
+            private void descend()
+            {
+                while (candidates.size() < positions.length)
+                {
+                    int leg = candidates.size();
+                    ArrayList<Relationship> previous = candidates.get(leg - 1).get(positions[leg - 1]);
+                    candidates.add(byStart.get(leg).get(endNode(previous)));
+                    positions[leg] = 0;
+                }
+            }
+
+            private void advance()
+            {
+                while (!candidates.isEmpty())
+                {
+                    int leg = candidates.size() - 1;
+                    if (++positions[leg] < candidates.get(leg).size())
+                    {
+                        descend();
+                        return;
+                    }
+                    candidates.remove(leg);
+                }
+                hasNext = false;
+            }
+        };
+    }
+
+    private static long startNode(ArrayList<Relationship> path)
+    {
+        return path.get(0).getStartNode().getId();
+    }
+
+    private static long endNode(ArrayList<Relationship> path)
+    {
+        return path.get(path.size() - 1).getEndNode().getId();
+    }
+}
@@ -0,0 +1,11 @@
+package preferencepaths;
+
+/**
+ * Scores paths for top-k queries, higher being better. The score must never
+ * grow with the length nor shrink with the reward, so the score of the bounds
+ * of a node caps the score of every path through it.
+ */
+public interface PathScorer
+{
+    double score(int length, int reward);
+}
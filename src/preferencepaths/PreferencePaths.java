@@ -0,0 +1,1131 @@
+package preferencepaths;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+
+import edu.sdsc.scigraph.internal.reachability.ReachabilityIndex;
+
+
+public class PreferencePaths
+{
+    // Reproducible databases at any scale come from SocialGraphGenerator
+    private static final String DB_PATH = "target/social4.db";
+    private static final String LANDMARKS_SUFFIX = ".landmarks";
+    //private static final String DB_PATH = "target/socialDouble.db";
+    //private static final String DB_PATH = "target/socialQuad.db";
+    
+    private static final int NEGATIVE_REWARD = -1000000;
+    
+    // Most cached query results, and most nodes their searches labelled in all
+    private static final int RESULT_CACHE_ENTRIES = 256;
+    private static final long RESULT_CACHE_NODES = 1L << 24;
+    
+    // Shortest path depth of sequence legs, without the edges to the regions
+    private static final int LEG_MAX_DEPTH = 13;
+    
+    private static GraphDatabaseService graphDb;
+    // Store directory of the database, or file of the snapshot when there is none
+    private static String storePath;
+    private static ReachabilityIndex index;
+    private static GraphSnapshot snapshot;
+    private static LandmarkIndex landmarks;
+    private static final PreferenceSetCache preferenceSets = new PreferenceSetCache();
+    private static final QueryResultCache results = new QueryResultCache(RESULT_CACHE_ENTRIES, RESULT_CACHE_NODES);
+    private static final ProfileStats profileStats = QueryProfile.ENABLED ? ProfileStats.register() : null;
+    
+    // Runs the Cypher queries and the independent searches of a request concurrently
+    private static final ExecutorService loaders = Executors.newCachedThreadPool(new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "query-loader");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public QueryResult preferencePathQuery(String startNodesQuery, String endNodesQuery, ArrayList<String> preferenceQueries, ArrayList<String> excludeQueries) 
+    {
+        return preferencePathQuery(startNodesQuery, endNodesQuery, preferenceQueries, excludeQueries, new QueryOptions());
+    }
+
+    /**
+     * Runs one preference path query. The start, end, preference and exclude
+     * queries are evaluated concurrently, and the start and end sets are pruned
+     * while the preference sets load and the cache key is computed. A query whose
+     * resolved sets and options match a cached complete result returns it
+     * without searching.
+     */
+    public QueryResult preferencePathQuery(String startNodesQuery, String endNodesQuery, ArrayList<String> preferenceQueries, ArrayList<String> excludeQueries, QueryOptions options) 
+    {
+        long startTime = now();
+        long generation = results.generation();
+        Future<long[]> startIds = loadIds(startNodesQuery);
+        Future<long[]> endIds = loadIds(endNodesQuery);
+        ArrayList<Future<PreferenceSet>> preferenceSets = loadPreferenceSets(preferenceQueries);
+        ArrayList<Future<PreferenceSet>> excludeSets = loadPreferenceSets(excludeQueries);
+        
+        // Without an open database the query runs on a mapped snapshot
+        Transaction tx = graphDb != null ? graphDb.beginTx() : null;
+        try
+        {
+            long[] starts = await(startIds);
+            long[] ends = await(endIds);
+            long seeded = now();
+            Future<QueryResultCache.Key> queryKey = loadKey(starts, ends, preferenceSets, excludeSets, options);
+        
+            // Pruning reads no rewards, so it runs while the preference queries do
+            QueryOptions.Pruning pruning = QueryPlanner.pruning(options, starts.length, ends.length, index != null, graphDb != null);
+            long[][] seeds = pruneSeeds(starts, ends, pruning);
+            long pruned = now();
+            QueryResultCache.Key key = await(queryKey);
+            QueryResult result = key == null ? null : results.get(key);
+            RewardTable rewards = getRewards(preferenceSets, excludeSets);
+        
+            if (result != null)
+            {
+                result = new QueryResult(new ArrayList<SkylinePath>(result.getPaths()), null, StopReason.COMPLETED, result.getPlan());
+            }
+            else
+            {
+                long rewarded = now();
+                QueryPlan plan = QueryPlanner.plan(options, pruning, starts.length, ends.length, seeds[0].length, seeds[1].length,
+                        rewards, rewardedNodes(preferenceSets), graphNodes());
+                result = runSearch(seeds[0], seeds[1], rewards, options, plan, key, generation);
+            
+                if (QueryProfile.ENABLED)
+                {
+                    QueryProfile profile = result.getProfile();
+                    profile.seedNanos = seeded - startTime;
+                    profile.pruneNanos = pruned - seeded;
+                    profile.rewardNanos = rewarded - pruned;
+                    profileStats.record(profile, now() - startTime);
+                }
+            }
+        
+            for (SkylinePath path : result.getPaths()) {
+                printPath(path, rewards, preferenceQueries.size());
+            }
+            if (!result.isComplete())
+            {
+                System.out.println("Search stopped early (" + result.getStopReason() + "), skyline may be partial");
+            }
+            
+            if (tx != null)
+            {
+                tx.success();
+            }
+            return result;
+        }
+        finally
+        {
+            if (tx != null)
+            {
+                tx.close();
+            }
+        }
+    }
+    
+    /**
+     * Runs one search per (start query, end query) pair under the same preference
+     * and exclude lists. The reward table is resolved once and shared, and the
+     * searches run concurrently, each on its own thread and read transaction.
+     * Results come back in the order of the pairs, from the result cache when
+     * it has them. The start and end query lists must be the same size.
+     */
+    public ArrayList<QueryResult> preferencePathQueries(ArrayList<String> startNodesQueries, ArrayList<String> endNodesQueries, ArrayList<String> preferenceQueries, ArrayList<String> excludeQueries, QueryOptions options, int threads) throws InterruptedException, ExecutionException
+    {
+        return preferencePathQueries(startNodesQueries, endNodesQueries, preferenceQueries, excludeQueries, options, threads, null);
+    }
+    
+    /**
+     * Runs the batch with one skyline listener per pair, in the order of the
+     * pairs, so each listener only hears about its own query. The options must
+     * not hold a listener themselves, as the concurrent searches could not be
+     * told apart in it.
+     */
+    public ArrayList<QueryResult> preferencePathQueries(ArrayList<String> startNodesQueries, ArrayList<String> endNodesQueries, ArrayList<String> preferenceQueries, ArrayList<String> excludeQueries, QueryOptions options, int threads,
+            ArrayList<SkylineListener> listeners) throws InterruptedException, ExecutionException
+    {
+        if (startNodesQueries.size() != endNodesQueries.size())
+        {
+            throw new IllegalArgumentException("Start and end query counts differ: " + startNodesQueries.size() + ", " + endNodesQueries.size());
+        }
+        if (options.getListener() != null)
+        {
+            throw new IllegalArgumentException("Batch queries take one listener per query, not one in the options");
+        }
+        if (listeners != null && listeners.size() != startNodesQueries.size())
+        {
+            throw new IllegalArgumentException("Listener and query counts differ: " + listeners.size() + ", " + startNodesQueries.size());
+        }
+        final long generation = results.generation();
+        ArrayList<Future<PreferenceSet>> preferenceSets = loadPreferenceSets(preferenceQueries);
+        ArrayList<Future<PreferenceSet>> excludeSets = loadPreferenceSets(excludeQueries);
+        final RewardTable rewards = getRewards(preferenceSets, excludeSets);
+        final int rewardedNodes = rewardedNodes(preferenceSets);
+        final ArrayList<PreferenceSet> preferences = awaitAll(preferenceSets);
+        final ArrayList<PreferenceSet> excludes = awaitAll(excludeSets);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ArrayList<Future<QueryResult>> futures = new ArrayList<Future<QueryResult>>();
+        for (int i = 0; i < startNodesQueries.size(); i++)
+        {
+            final String startNodesQuery = startNodesQueries.get(i);
+            final String endNodesQuery = endNodesQueries.get(i);
+            final QueryOptions queryOptions = listeners == null ? options : new QueryOptions(options);
+            if (listeners != null)
+            {
+                queryOptions.setListener(listeners.get(i));
+            }
+            futures.add(executor.submit(new Callable<QueryResult>()
+            {
+                @Override
+                public QueryResult call()
+                {
+                    if (graphDb == null)
+                    {
+                        return runQuery(startNodesQuery, endNodesQuery, rewards, rewardedNodes, preferences, excludes, queryOptions, generation);
+                    }
+                    Transaction tx = graphDb.beginTx();
+                    try
+                    {
+                        QueryResult result = runQuery(startNodesQuery, endNodesQuery, rewards, rewardedNodes, preferences, excludes, queryOptions, generation);
+                        tx.success();
+                        return result;
+                    }
+                    finally
+                    {
+                        tx.close();
+                    }
+                }
+            }));
+        }
+        
+        ArrayList<QueryResult> results = new ArrayList<QueryResult>();
+        try
+        {
+            for (Future<QueryResult> future : futures)
+            {
+                results.add(future.get());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+    
+    public void setReachabilityIndex(ReachabilityIndex idx)
+    {
+        index = idx;
+    }
+    
+    /**
+     * Loads the graph into an in-memory snapshot that later preference path
+     * searches expand instead of the Neo4j store.
+     */
+    public void loadSnapshot()
+    {
+        snapshot = GraphSnapshot.load(graphDb, new ArrayList<String>());
+        results.clear();
+        System.out.println("Snapshot loaded: " + snapshot.nodeCount() + " nodes, " + snapshot.edgeCount() + " relationships\n");
+    }
+    
+    /**
+     * Writes a snapshot of the graph to a file, together with the results of the
+     * given seed, preference and exclude queries, so that later runs can map it
+     * with openSnapshot instead of opening the database.
+     */
+    public void exportSnapshot(String path, ArrayList<String> queries) throws IOException
+    {
+        GraphSnapshot.load(graphDb, queries).write(new File(path));
+    }
+    
+    /**
+     * Maps a snapshot file written by exportSnapshot. Queries then run on it,
+     * and when no database was created, their Cypher text is looked up in the
+     * results stored with the snapshot.
+     */
+    public void openSnapshot(String path) throws IOException
+    {
+        snapshot = GraphSnapshot.map(new File(path));
+        if (graphDb == null)
+        {
+            storePath = path;
+        }
+        results.clear();
+        System.out.println("Snapshot mapped: " + snapshot.nodeCount() + " nodes, " + snapshot.edgeCount() + " relationships\n");
+    }
+    
+    /**
+     * Builds a landmark index with the given number of landmarks, over the loaded
+     * snapshot or a fresh one of the database, and writes it next to the
+     * database, or next to the snapshot file when no database is open. Rebuild
+     * it whenever relationships are added.
+     */
+    public void buildLandmarkIndex(int landmarkCount) throws IOException
+    {
+        GraphSnapshot graph = snapshot != null ? snapshot : GraphSnapshot.load(graphDb, new ArrayList<String>());
+        landmarks = LandmarkIndex.build(graph, landmarkCount);
+        results.clear();
+        landmarks.write(landmarksFile());
+        System.out.println("Landmark index built: " + landmarks.landmarkCount() + " landmarks\n");
+    }
+    
+    /**
+     * Maps the landmark index stored next to the database or snapshot. Later
+     * searches use it to skip nodes the start nodes cannot reach. Fails with an
+     * IOException when the graph no longer has the node and relationship counts
+     * the index was built for.
+     */
+    public void openLandmarkIndex() throws IOException
+    {
+        long[] counts = graphCounts();
+        landmarks = LandmarkIndex.map(landmarksFile(), counts[0], counts[1]);
+        results.clear();
+        System.out.println("Landmark index mapped: " + landmarks.landmarkCount() + " landmarks\n");
+    }
+    
+    private static File landmarksFile()
+    {
+        if (storePath == null)
+        {
+            throw new IllegalStateException("No database or snapshot is open");
+        }
+        return new File(storePath + LANDMARKS_SUFFIX);
+    }
+    
+    /**
+     * Node and relationship counts of the graph the queries run on. The store
+     * keeps both counts, so reading them scans nothing.
+     */
+    private static long[] graphCounts()
+    {
+        if (snapshot != null)
+        {
+            return new long[] {snapshot.nodeCount(), snapshot.edgeCount()};
+        }
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            long nodes = ((Number) graphDb.execute("MATCH (n) RETURN count(n) AS c").next().get("c")).longValue();
+            long edges = ((Number) graphDb.execute("MATCH ()-[r]->() RETURN count(r) AS c").next().get("c")).longValue();
+            tx.success();
+            return new long[] {nodes, edges};
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+    
+    /**
+     * Builds the reward table from the preference and exclude sets, waiting for
+     * each in list order.
+     */
+    private RewardTable getRewards(ArrayList<Future<PreferenceSet>> preferenceSets, ArrayList<Future<PreferenceSet>> excludeSets)
+    {
+        RewardTable rewards = new RewardTable(NEGATIVE_REWARD, 1024);
+        int reward = preferenceSets.size();
+        for (Future<PreferenceSet> set : preferenceSets)
+        {
+            putRewards(rewards, await(set), reward);
+            reward--;
+        }
+        
+        // Set negative reward for exclude list
+        for (Future<PreferenceSet> set : excludeSets)
+        {
+            putRewards(rewards, await(set), NEGATIVE_REWARD);
+        }
+        return rewards;
+    }
+    
+    private static void putRewards(RewardTable rewards, PreferenceSet set, int reward)
+    {
+        rewards.putAll(set.getNodes(), reward);
+        for (String type : set.getTypeNames())
+        {
+            rewards.put(type, reward);
+        }
+    }
+    
+    /**
+     * Evaluates the preference or exclude queries on the loader threads, each
+     * taking its set from the cache when no committed change has invalidated it.
+     */
+    private ArrayList<Future<PreferenceSet>> loadPreferenceSets(ArrayList<String> queries)
+    {
+        ArrayList<Future<PreferenceSet>> sets = new ArrayList<Future<PreferenceSet>>();
+        for (final String query : queries)
+        {
+            sets.add(loaders.submit(new Callable<PreferenceSet>()
+            {
+                @Override
+                public PreferenceSet call()
+                {
+                    PreferenceSet set = preferenceSets.get(query);
+                    if (set == null)
+                    {
+                        long generation = preferenceSets.generation();
+                        set = readPreferenceSet(query);
+                        preferenceSets.put(query, set, generation);
+                    }
+                    return set;
+                }
+            }));
+        }
+        return sets;
+    }
+    
+    /**
+     * Computes the cache key of a query on a loader thread, once its preference
+     * and exclude sets are loaded.
+     */
+    private Future<QueryResultCache.Key> loadKey(final long[] startIds, final long[] endIds, final ArrayList<Future<PreferenceSet>> preferenceSets,
+            final ArrayList<Future<PreferenceSet>> excludeSets, final QueryOptions options)
+    {
+        return loaders.submit(new Callable<QueryResultCache.Key>()
+        {
+            @Override
+            public QueryResultCache.Key call()
+            {
+                return QueryResultCache.key(startIds, endIds, awaitAll(preferenceSets), awaitAll(excludeSets), options);
+            }
+        });
+    }
+    
+    /**
+     * Evaluates a seed query on a loader thread.
+     */
+    private Future<long[]> loadIds(final String query)
+    {
+        return loaders.submit(new Callable<long[]>()
+        {
+            @Override
+            public long[] call()
+            {
+                return getIds(query);
+            }
+        });
+    }
+    
+    /**
+     * Resolves the start and end nodes of one query and runs its search, unless
+     * its result is cached. Must be called with a transaction open on the calling
+     * thread when the database is.
+     */
+    private QueryResult runQuery(String startNodesQuery, String endNodesQuery, RewardTable rewards, int rewardedNodes,
+            ArrayList<PreferenceSet> preferences, ArrayList<PreferenceSet> excludes, QueryOptions options, long generation)
+    {
+        long startTime = now();
+        long[] startIds = getIds(startNodesQuery);
+        long[] endIds = getIds(endNodesQuery);
+        long seeded = now();
+        QueryResultCache.Key key = QueryResultCache.key(startIds, endIds, preferences, excludes, options);
+        QueryResult cached = key == null ? null : results.get(key);
+        if (cached != null)
+        {
+            return new QueryResult(new ArrayList<SkylinePath>(cached.getPaths()), null, StopReason.COMPLETED, cached.getPlan());
+        }
+        QueryOptions.Pruning pruning = QueryPlanner.pruning(options, startIds.length, endIds.length, index != null, graphDb != null);
+        long[][] seeds = pruneSeeds(startIds, endIds, pruning);
+        long pruned = now();
+        QueryPlan plan = QueryPlanner.plan(options, pruning, startIds.length, endIds.length, seeds[0].length, seeds[1].length,
+                rewards, rewardedNodes, graphNodes());
+        QueryResult result = runSearch(seeds[0], seeds[1], rewards, options, plan, key, generation);
+        
+        if (QueryProfile.ENABLED)
+        {
+            QueryProfile profile = result.getProfile();
+            profile.seedNanos = seeded - startTime;
+            profile.pruneNanos = pruned - seeded;
+            profileStats.record(profile, now() - startTime);
+        }
+        return result;
+    }
+    
+    /**
+     * Drops the start and end nodes that cannot be joined, the way the plan
+     * chose. Reads the graph only, never the rewards.
+     */
+    private long[][] pruneSeeds(long[] startIds, long[] endIds, QueryOptions.Pruning pruning)
+    {
+        switch (pruning)
+        {
+            case INDEX_PROBES:
+                return probeIndex(startIds, endIds);
+            case TRAVERSAL:
+                return new SetReachability(graphDb).prune(startIds, endIds);
+            default:
+                return new long[][] { startIds, endIds };
+        }
+    }
+    
+    /**
+     * Runs the search and caches its result under the key, if there is one and
+     * the search completed.
+     */
+    private QueryResult runSearch(long[] startIds, long[] endIds, RewardTable rewards, QueryOptions options, QueryPlan plan,
+            QueryResultCache.Key key, long generation)
+    {
+        SearchGraph graph = snapshot != null ? snapshot.view(rewards) : new Neo4jSearchGraph(graphDb, rewards);
+        PreferenceSearch search = new PreferenceSearch(graph, rewards, options, landmarks, plan.getFrontier());
+        long startTime = now();
+        ArrayList<SkylinePath> paths = search.run(startIds, endIds);
+        if (QueryProfile.ENABLED)
+        {
+            search.getProfile().searchNanos = now() - startTime;
+        }
+        QueryResult result = new QueryResult(paths, search.getProfile(), search.getStopReason(), plan);
+        if (key != null && result.isComplete())
+        {
+            results.put(key, new QueryResult(new ArrayList<SkylinePath>(paths), null, StopReason.COMPLETED, plan), search.visitedNodes(), generation);
+        }
+        return result;
+    }
+    
+    /**
+     * Nodes in the preference sets, for the planner.
+     */
+    private static int rewardedNodes(ArrayList<Future<PreferenceSet>> preferenceSets)
+    {
+        int count = 0;
+        for (Future<PreferenceSet> set : preferenceSets)
+        {
+            count += await(set).getNodes().size();
+        }
+        return count;
+    }
+    
+    /**
+     * Nodes in the graph as far as the snapshot or landmark index tell, or 0.
+     */
+    private static long graphNodes()
+    {
+        if (snapshot != null)
+        {
+            return snapshot.nodeCount();
+        }
+        return landmarks != null ? landmarks.nodeCount() : 0;
+    }
+    
+    /**
+     * Returns the time for profiling, or 0 when profiling is off.
+     */
+    private static long now()
+    {
+        return QueryProfile.ENABLED ? System.nanoTime() : 0;
+    }
+    
+    /**
+     * Reads the node ids a seed query returns straight into a primitive array.
+     * Runs in its own transaction, which nests into the caller's one if any.
+     */
+    private long[] getIds(String query)
+    {
+        if (graphDb == null)
+        {
+            String[] values = getSnapshotQuery(query);
+            long[] ids = new long[values.length];
+            for (int i = 0; i < ids.length; i++)
+            {
+                ids[i] = Long.parseLong(values[i]);
+            }
+            return ids;
+        }
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            Result result = graphDb.execute(query);
+            long[] ids = new long[1024];
+            int count = 0;
+            while (result.hasNext())
+            {
+                for (Object value : result.next().values())
+                {
+                    if (count == ids.length)
+                    {
+                        ids = Arrays.copyOf(ids, count << 1);
+                    }
+                    ids[count++] = value instanceof Number ? ((Number) value).longValue() : Long.parseLong((String) value);
+                }
+            }
+            tx.success();
+            return Arrays.copyOf(ids, count);
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+    
+    /**
+     * Reads the values a preference or exclude query returns into a set, in its
+     * own transaction.
+     */
+    private PreferenceSet readPreferenceSet(String query)
+    {
+        if (graphDb == null)
+        {
+            return PreferenceSet.of(Arrays.asList(getSnapshotQuery(query)));
+        }
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            Result result = graphDb.execute(query);
+            PreferenceSet.Builder builder = new PreferenceSet.Builder();
+            while (result.hasNext())
+            {
+                for (Object value : result.next().values())
+                {
+                    if (value instanceof Number)
+                    {
+                        builder.add(((Number) value).longValue());
+                    }
+                    else
+                    {
+                        builder.add((String) value);
+                    }
+                }
+            }
+            tx.success();
+            return builder.build();
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+    
+    /**
+     * Waits for a value loaded on another thread, rethrowing what failed there.
+     */
+    private static <T> ArrayList<T> awaitAll(ArrayList<Future<T>> futures)
+    {
+        ArrayList<T> values = new ArrayList<T>(futures.size());
+        for (Future<T> future : futures)
+        {
+            values.add(await(future));
+        }
+        return values;
+    }
+    
+    private static <T> T await(Future<T> future)
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading a query", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+    
+    private String[] getSnapshotQuery(String query)
+    {
+        String[] values = snapshot == null ? null : snapshot.getQueryResult(query);
+        if (values == null)
+        {
+            throw new IllegalArgumentException("Query not stored in the snapshot: " + query);
+        }
+        return values;
+    }
+    
+    private void printPath(SkylinePath path, RewardTable rewards, int numPrefs) {
+        try {
+        long[] rels = path.getRelationships();
+        if (rels.length == 0) {
+            System.out.println("empty path");
+            return;
+        }
+        long[] pathNodes = path.getNodes();
+        int nodes = 1, pref1 = 0, pref2 =0;
+        StringBuilder sb = new StringBuilder();
+        sb.append("(" + nodeName(pathNodes[0]) + ")");
+        int cost = 0;
+        for (int i = 0; i < rels.length; i++) 
+        {
+            long n = pathNodes[i + 1];
+            String type = relationshipType(n, rels[i]);
+            
+            sb.append("--[" + type + "]-->(" + nodeName(n) + ")");
+            cost += rewards.typeReward(type);
+            
+            if (rewards.hasNodeReward(n)) 
+            {
+                cost += rewards.nodeReward(n);
+                if (cost == 2 * numPrefs)
+                    pref1++;
+                else //if (cost == -4)
+                    pref2++;
+            }
+            nodes++;
+        }
+        
+        System.out.println(sb);
+        System.out.println("Reward: " + cost);
+        System.out.println("Total nodes: " + nodes + " Pref1: " + pref1 + " Pref2: " + pref2);
+        } catch(NullPointerException e) {e.printStackTrace();}
+    }
+    
+    /**
+     * Node and first label, read from the database or, when it is not open,
+     * from the mapped snapshot.
+     */
+    private String nodeName(long id)
+    {
+        if (graphDb == null)
+        {
+            return "Node[" + id + "] " + snapshot.getLabel(id);
+        }
+        Node n = graphDb.getNodeById(id);
+        return n + " " + n.getLabels().iterator().next();
+    }
+    
+    private String relationshipType(long endNode, long id)
+    {
+        if (graphDb == null)
+        {
+            return snapshot.getRelationshipType(endNode, id);
+        }
+        return graphDb.getRelationshipById(id).getType().name();
+    }
+    
+    private void printPathNoRewards(ArrayList<Relationship> path) {
+        try {
+        if (path.size() == 0) {
+            System.out.println("empty path");
+            return;
+        }
+        int nodes = 1, pref1 = 0, pref2 =0;
+        StringBuilder sb = new StringBuilder();
+        sb.append("(" + path.get(0).getStartNode() + " " + path.get(0).getStartNode().getLabels().iterator().next() + ")");
+        int cost = 0;
+        for (int i = 0; i < path.size(); i++) 
+        {
+            Relationship r = path.get(i);
+            Node n = r.getEndNode();
+            
+            sb.append("--[" + (path.get(i)).getType() + "]-->(" + n + " " + n.getLabels().iterator().next() + ")");
+        }
+        
+        System.out.println(sb);
+        } catch(NullPointerException e) {e.printStackTrace();}
+    }
+    
+    /**
+     * Drops the start nodes that reach no end node and the end nodes no start
+     * node reaches, probing the reachability index when the sets are small and
+     * traversing from each set otherwise.
+     */
+    private long[][] pruneUnreachable(long[] startIds, long[] endIds)
+    {
+        return pruneSeeds(startIds, endIds, QueryPlanner.pruning(startIds.length, endIds.length, index != null));
+    }
+    
+    private long[][] probeIndex(long[] startIds, long[] endIds)
+    {
+        boolean[] startReaches = new boolean[startIds.length];
+        boolean[] endReached = new boolean[endIds.length];
+        for (int i = 0; i < startIds.length; i++)
+        {
+            Node startNode = graphDb.getNodeById(startIds[i]);
+            for (int j = 0; j < endIds.length; j++)
+            {
+                if ((!startReaches[i] || !endReached[j]) && index.canReach(startNode, graphDb.getNodeById(endIds[j])))
+                {
+                    startReaches[i] = true;
+                    endReached[j] = true;
+                }
+            }
+        }
+        return new long[][] { filter(startIds, startReaches), filter(endIds, endReached) };
+    }
+    
+    private static long[] filter(long[] ids, boolean[] keep)
+    {
+        long[] kept = new long[ids.length];
+        int count = 0;
+        for (int i = 0; i < ids.length; i++)
+        {
+            if (keep[i])
+            {
+                kept[count++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+    
+    void createDb() throws IOException
+    {
+        createDb(DB_PATH);
+    }
+    
+    void createDb(String path) throws IOException
+    {
+        //FileUtils.deleteRecursively( new File( DB_PATH ) );
+
+        graphDb = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder( path ).
+                newGraphDatabase();
+        storePath = path;
+        graphDb.registerTransactionEventHandler(preferenceSets);
+        graphDb.registerTransactionEventHandler(results);
+        results.clear();
+        registerShutdownHook( graphDb );
+        System.out.println("Database loaded\n");
+    }
+    
+    GraphDatabaseService getGraphDb()
+    {
+        return graphDb;
+    }
+    
+    void shutDown()
+    {
+        System.out.println();
+        System.out.println( "Shutting down database ..." );
+        graphDb.shutdown();
+    }
+    
+    private static void registerShutdownHook( final GraphDatabaseService graphDb )
+    {
+        // Registers a shutdown hook for the Neo4j instance so that it
+        // shuts down nicely when the VM exits (even if you "Ctrl-C" the
+        // running application).
+        Runtime.getRuntime().addShutdownHook( new Thread()
+        {
+            @Override
+            public void run()
+            {
+                graphDb.shutdown();
+            }
+        } );
+    }
+    
+    public void sequencePathQuery(String startNodesQuery, String endNodesQuery, ArrayList<String> midPointsQueries)
+    {
+        sequencePathQuery(startNodesQuery, endNodesQuery, midPointsQueries, 1);
+    }
+    
+    /**
+     * Finds paths from the start nodes to the end nodes through each region of
+     * midPointsQueries in turn, and prints and returns the first limit of them.
+     * The paths carry no reward, and their length is their number of edges.
+     *
+     * The region queries, the reachability pruning of each pair of consecutive
+     * regions and the leg searches all run concurrently, each leg seeded from
+     * the whole of its pruned region. Only the join is constrained to the nodes
+     * the previous leg actually reached; a leg none of whose paths start there
+     * is searched again from those nodes. The legs are joined lazily, so paths
+     * past the limit are never built.
+     *
+     * The legs are traversed in Neo4j, so sequence queries need an open
+     * database and do not run on a snapshot alone.
+     */
+    public QueryResult sequencePathQuery(String startNodesQuery, String endNodesQuery, ArrayList<String> midPointsQueries, int limit) 
+    {
+        if (graphDb == null)
+        {
+            throw new IllegalStateException("Sequence queries need an open database, not only a snapshot");
+        }
+        QueryProfile profile = QueryProfile.ENABLED ? new QueryProfile() : null;
+        long startTime = now();
+        ArrayList<Future<long[]>> loads = new ArrayList<Future<long[]>>();
+        loads.add(loadIds(startNodesQuery));
+        for (String query : midPointsQueries)
+        {
+            loads.add(loadIds(query));
+        }
+        loads.add(loadIds(endNodesQuery));
+        
+        int count = loads.size();
+        long[][] regions = new long[count][];
+        for (int i = 0; i < count; i++)
+        {
+            regions[i] = await(loads.get(i));
+        }
+        long seeded = now();
+        
+        // Prune every pair of consecutive regions at once, keeping what both pairs of a region keep
+        ArrayList<Future<long[][]>> pairs = new ArrayList<Future<long[][]>>();
+        for (int i = 0; i + 1 < count; i++)
+        {
+            final long[] from = regions[i];
+            final long[] to = regions[i + 1];
+            pairs.add(submitInTransaction(new Callable<long[][]>()
+            {
+                @Override
+                public long[][] call()
+                {
+                    return pruneUnreachable(from, to);
+                }
+            }));
+        }
+        for (int i = 0; i + 1 < count; i++)
+        {
+            long[][] pruned = await(pairs.get(i));
+            regions[i] = i == 0 ? pruned[0] : retain(regions[i], pruned[0]);
+            regions[i + 1] = pruned[1];
+        }
+        long pruned = now();
+        
+        ArrayList<Future<ArrayList<ArrayList<Relationship>>>> searches = new ArrayList<Future<ArrayList<ArrayList<Relationship>>>>();
+        for (int i = 0; i + 1 < count; i++)
+        {
+            searches.add(findPathsAsync(regions[i], regions[i + 1]));
+        }
+        
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            ArrayList<ArrayList<ArrayList<Relationship>>> legs = new ArrayList<ArrayList<ArrayList<Relationship>>>();
+            HashSet<Node> frontier = null;
+            for (int i = 0; i + 1 < count; i++)
+            {
+                ArrayList<ArrayList<Relationship>> paths = await(searches.get(i));
+                if (frontier != null)
+                {
+                    paths = startingIn(paths, frontier);
+                    if (paths.isEmpty() && !frontier.isEmpty())
+                    {
+                        paths = findPaths(new ArrayList<Node>(frontier), nodes(regions[i + 1]), LEG_MAX_DEPTH);
+                    }
+                }
+                legs.add(paths);
+                
+                frontier = new HashSet<Node>();
+                for (ArrayList<Relationship> path : paths)
+                {
+                    frontier.add(path.get(path.size() - 1).getEndNode());
+                }
+            }
+            long searched = now();
+            
+            ArrayList<SkylinePath> found = new ArrayList<SkylinePath>();
+            Iterator<ArrayList<Relationship>> paths = new PathJoin(legs).iterator();
+            while (found.size() < limit && paths.hasNext())
+            {
+                ArrayList<Relationship> path = paths.next();
+                printPathNoRewards(path);
+                found.add(toSkylinePath(path));
+            }
+            tx.success();
+            
+            if (QueryProfile.ENABLED)
+            {
+                profile.seedNanos = seeded - startTime;
+                profile.pruneNanos = pruned - seeded;
+                profile.searchNanos = searched - pruned;
+                profile.joinNanos = now() - searched;
+                profileStats.record(profile, now() - startTime);
+            }
+            return new QueryResult(found, profile);
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+    
+    private static SkylinePath toSkylinePath(ArrayList<Relationship> path)
+    {
+        long[] nodeIds = new long[path.size() + 1];
+        long[] relIds = new long[path.size()];
+        nodeIds[0] = path.get(0).getStartNode().getId();
+        for (int i = 0; i < relIds.length; i++)
+        {
+            relIds[i] = path.get(i).getId();
+            nodeIds[i + 1] = path.get(i).getEndNode().getId();
+        }
+        return new SkylinePath(nodeIds, relIds, relIds.length, 0);
+    }
+    
+    private Future<ArrayList<ArrayList<Relationship>>> findPathsAsync(final long[] from, final long[] to)
+    {
+        return submitInTransaction(new Callable<ArrayList<ArrayList<Relationship>>>()
+        {
+            @Override
+            public ArrayList<ArrayList<Relationship>> call()
+            {
+                return findPaths(nodes(from), nodes(to), LEG_MAX_DEPTH);
+            }
+        });
+    }
+    
+    /**
+     * Runs a task on the loader threads inside its own transaction.
+     */
+    private <T> Future<T> submitInTransaction(final Callable<T> task)
+    {
+        return loaders.submit(new Callable<T>()
+        {
+            @Override
+            public T call() throws Exception
+            {
+                Transaction tx = graphDb.beginTx();
+                try
+                {
+                    T result = task.call();
+                    tx.success();
+                    return result;
+                }
+                finally
+                {
+                    tx.close();
+                }
+            }
+        });
+    }
+    
+    private static ArrayList<ArrayList<Relationship>> startingIn(ArrayList<ArrayList<Relationship>> paths, HashSet<Node> nodes)
+    {
+        ArrayList<ArrayList<Relationship>> kept = new ArrayList<ArrayList<Relationship>>();
+        for (ArrayList<Relationship> path : paths)
+        {
+            if (nodes.contains(path.get(0).getStartNode()))
+            {
+                kept.add(path);
+            }
+        }
+        return kept;
+    }
+    
+    /**
+     * Returns the ids of the first array that also appear in the second one.
+     */
+    private static long[] retain(long[] ids, long[] kept)
+    {
+        long[] sorted = kept.clone();
+        Arrays.sort(sorted);
+        boolean[] keep = new boolean[ids.length];
+        for (int i = 0; i < ids.length; i++)
+        {
+            keep[i] = Arrays.binarySearch(sorted, ids[i]) >= 0;
+        }
+        return filter(ids, keep);
+    }
+    
+    private ArrayList<Node> nodes(long[] ids)
+    {
+        ArrayList<Node> nodes = new ArrayList<Node>();
+        for (long id : ids)
+        {
+            nodes.add(graphDb.getNodeById(id));
+        }
+        return nodes;
+    }
+    
+    /**
+     * Finds all shortest outgoing paths of at least one edge from any node in
+     * from to any node in to. The search runs breadth first from the whole from
+     * set at once and keeps every shortest predecessor of a node, which is what
+     * a shortest path search between two virtual nodes linked to the sets gives.
+     */
+    private ArrayList<ArrayList<Relationship>> findPaths(ArrayList<Node> from, ArrayList<Node> to, int maxDepth)
+    {
+        HashSet<Node> targets = new HashSet<Node>(to);
+        HashSet<Node> visited = new HashSet<Node>(from);
+        HashMap<Node, ArrayList<Relationship>> predecessors = new HashMap<Node, ArrayList<Relationship>>();
+        ArrayList<Node> frontier = new ArrayList<Node>(visited);
+        ArrayList<Node> reached = new ArrayList<Node>();
+        
+        for (int depth = 1; depth <= maxDepth && reached.isEmpty() && !frontier.isEmpty(); depth++)
+        {
+            ArrayList<Node> next = new ArrayList<Node>();
+            for (Node n : frontier)
+            {
+                for (Relationship r : n.getRelationships(Direction.OUTGOING))
+                {
+                    Node m = r.getEndNode();
+                    ArrayList<Relationship> preds = predecessors.get(m);
+                    if (preds == null)
+                    {
+                        if (visited.contains(m))
+                        {
+                            continue;
+                        }
+                        preds = new ArrayList<Relationship>();
+                        predecessors.put(m, preds);
+                        next.add(m);
+                        if (targets.contains(m))
+                        {
+                            reached.add(m);
+                        }
+                    }
+                    else if (visited.contains(m))
+                    {
+                        // Reached on an earlier level
+                        continue;
+                    }
+                    preds.add(r);
+                }
+            }
+            visited.addAll(next);
+            frontier = next;
+        }
+        
+        ArrayList<ArrayList<Relationship>> paths = new ArrayList<ArrayList<Relationship>>();
+        for (Node m : reached)
+        {
+            collectPaths(m, new ArrayList<Relationship>(), predecessors, paths);
+        }
+        return paths;
+    }
+    
+    private void collectPaths(Node m, ArrayList<Relationship> suffix, HashMap<Node, ArrayList<Relationship>> predecessors, ArrayList<ArrayList<Relationship>> paths)
+    {
+        ArrayList<Relationship> preds = predecessors.get(m);
+        if (preds == null)
+        {
+            ArrayList<Relationship> path = new ArrayList<Relationship>(suffix);
+            Collections.reverse(path);
+            paths.add(path);
+            return;
+        }
+        for (Relationship r : preds)
+        {
+            suffix.add(r);
+            collectPaths(r.getStartNode(), suffix, predecessors, paths);
+            suffix.remove(suffix.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,601 @@
+package preferencepaths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+/**
+ * State and main loop of one preference path search. The search runs backwards
+ * from a virtual super-sink linked to the end nodes, keeping a lower bound on
+ * length and an upper bound on reward per node, until the open list drains, or
+ * the deadline, the expansion budget, a cancellation or the listener stops it
+ * with the skyline found so far. Every instance belongs to one query, so separate
+ * searches can run on separate threads sharing the same reward table. A search
+ * over the Neo4j store needs a transaction open on the calling thread.
+ *
+ * With reachability pruning, a forward sweep from the start nodes first marks
+ * every node they reach, and the backward search labels no other node. Labels
+ * only flow from a node to its predecessors, and the predecessors of an
+ * unmarked node are unmarked too, so the skipped nodes never reach a start
+ * node and never change a label the search keeps. As the open list breaks ties
+ * by node id, the search pops the marked nodes in the same order either way and
+ * finds the same skyline. This is not a bidirectional search: the sweep visits
+ * everything the start nodes reach, which can be more than the backward search
+ * alone would label.
+ *
+ * A landmark index skips the same way the nodes its hop bounds show the start
+ * nodes cannot reach, without a sweep. The bounds only decide which nodes are
+ * skipped: adding them to the open list key or to the hop limit test would
+ * change the pop order, and with one label per node that changes the skyline.
+ *
+ * A top-k search scores the paths it finds and keeps the k best. When the open
+ * list is ordered by lower bound it ends as soon as the shortest open path,
+ * with the most reward the hop limit allows, cannot beat the k-th one.
+ */
+public class PreferenceSearch
+{
+    // The clock and the cancellation token are read every this many iterations
+    private static final int CHECK_INTERVAL_MASK = 255;
+   
+    private static final int LOWER_BOUND = 0;
+    private static final int UPPER_BOUND = 1;
+    private static final int INITIAL_LOWER_BOUND = 2000000;
+    private static final int INITIAL_UPPER_BOUND = -1;
+    
+    // Ids of the virtual super-source, super-sink and edges into the sink
+    private static final long SOURCE = -1;
+    private static final long SINK = -2;
+    private static final long SINK_RELATIONSHIP = -2;
+    
+    private final SearchGraph graph;
+    private final RewardTable rewards;
+    private final boolean priorityQueue;
+    private final int maxHops;
+    private final boolean reachabilityPruning;
+    private final SkylineListener listener;
+    private final LandmarkIndex landmarks;
+    private final long maxExpansions;
+    private final CancellationToken cancellation;
+    private final long timeOut;
+    private final QueryOptions options;
+    private final QueryProfile profile;
+    private final TopPaths topPaths;
+    private final ArrayList<SkylinePath> evicted = new ArrayList<SkylinePath>();
+    private boolean stopped;
+    private StopReason stopReason = StopReason.COMPLETED;
+    private long expanded;
+    private int iterations;
+    private boolean hasDeadline;
+    private long deadline;
+    private int rewardCap;
+    // Last length topKSettled bounded, and the best score it allows
+    private int settledLength = -1;
+    private double settledScore;
+    
+    private LabelStore labels;
+    // Nodes the forward sweep reached, with reachability pruning
+    private LongIntMap reached;
+    private long[] reachedNodes;
+    private int reachedCount;
+    private LongIntMap sources;
+    private int[] sourceBounds;
+    private long[] sourceSuccessors;
+    private HopBounds hopsFromSources;
+    
+    private final long[] batchNodes = new long[1];
+    private final Expansion[] expansions = {new Expansion()};
+
+    /**
+     * Creates a search over the given graph, with the open list order the plan
+     * chose; AUTO orders by lower bound. The landmark index may be null.
+     */
+    public PreferenceSearch(SearchGraph graph, RewardTable rewards, QueryOptions options, LandmarkIndex landmarks, QueryOptions.Frontier frontier)
+    {
+        this.graph = graph;
+        this.rewards = rewards;
+        this.priorityQueue = frontier != QueryOptions.Frontier.BOUND_SPREAD;
+        this.maxHops = options.getMaxHops();
+        this.reachabilityPruning = options.isReachabilityPruning();
+        this.listener = options.getListener();
+        this.landmarks = landmarks;
+        this.maxExpansions = options.getMaxExpansions();
+        this.cancellation = options.getCancellation();
+        this.timeOut = options.getTimeOut();
+        this.options = options;
+        this.profile = QueryProfile.ENABLED ? new QueryProfile() : null;
+        this.topPaths = options.getTopK() > 0 ? new TopPaths(options.getTopK(), options.getScorer()) : null;
+    }
+
+    /**
+     * Returns why the search ended. Anything but COMPLETED means the skyline it
+     * returned is only the best found so far.
+     */
+    public StopReason getStopReason()
+    {
+        return stopReason;
+    }
+
+    /**
+     * Returns the nodes the finished search labelled, and those the forward sweep
+     * reached. Paths that a new or deleted relationship could add or break run
+     * through one of its ends, and so does any change to what the start nodes
+     * reach, so a change touching none of them leaves the result as it is.
+     */
+    public NodeIdSet visitedNodes()
+    {
+        int backward = labels == null ? 0 : labels.size();
+        long[] ids = new long[backward + reachedCount];
+        for (int i = 0; i < backward; i++)
+        {
+            ids[i] = labels.node(i);
+        }
+        System.arraycopy(reachedNodes == null ? ids : reachedNodes, 0, ids, backward, reachedCount);
+        return NodeIdSet.of(ids, ids.length);
+    }
+    
+    /**
+     * Returns the counters of this search, or null when profiling is off.
+     */
+    public QueryProfile getProfile()
+    {
+        return profile;
+    }
+
+    /**
+     * Runs the search and returns the skyline paths from the start to the end
+     * nodes, ordered by increasing length, or in a top-k search the k best
+     * scoring paths found, best first.
+     */
+    public ArrayList<SkylinePath> run(long[] startNodes, long[] endNodes)
+    {
+        startClock();
+        // Most reward a path within the hop limit can collect
+        rewardCap = (maxHops - 1) * rewards.maxEdgeReward();
+        if (landmarks != null)
+        {
+            hopsFromSources = new HopBounds(landmarks, startNodes, true);
+        }
+        
+        if (reachabilityPruning && !sweepForward(startNodes))
+        {
+            return new ArrayList<SkylinePath>();
+        }
+        
+        // The super-source s and super-sink t only exist in the search labels:
+        // start nodes lead to s and end nodes to t through virtual edges.
+        sources = new LongIntMap(startNodes.length);
+        for (long n : startNodes)
+        {
+            sources.put(n, 1);
+        }
+        
+        labels = new LabelStore(1024, INITIAL_LOWER_BOUND, INITIAL_UPPER_BOUND);
+        int tSlot = labels.insert(SINK);
+        labels.setLowerBound(tSlot, 0, LabelStore.NO_RELATIONSHIP);
+        labels.setUpperBound(tSlot, 0, LabelStore.NO_RELATIONSHIP, 0);
+        sourceBounds = new int[] {INITIAL_LOWER_BOUND, INITIAL_UPPER_BOUND};
+        sourceSuccessors = new long[] {SOURCE, SOURCE};
+        ParetoFrontier<SkylinePath> skyline = new ParetoFrontier<SkylinePath>();
+        // Open nodes ordered by lower bound, or by lower minus upper bound
+        NodeHeap open = new NodeHeap(labels, !priorityQueue, 1000);
+        open.update(tSlot);
+        
+        while (!open.isEmpty() && mayContinue())
+        {
+            // Every path still to be found leaves an open node by the source edge
+            if (priorityQueue && topKSettled(labels.lowerBoundAt(open.peek()) + 1))
+            {
+                break;
+            }
+            
+            int nSlot = poll(open);
+            long nId = labels.node(nSlot);
+            
+            // Skip node expansion if subpath is globally dominated
+            if (globallyDominated(nSlot, skyline))
+            {
+                continue;
+            }
+            
+            // Node expansion
+            expanded++;
+            if (nId == SINK)
+            {
+                relaxSink(open, nSlot, endNodes);
+            }
+            else
+            {
+                Expansion expansion = expandIncoming(nId);
+                if (QueryProfile.ENABLED)
+                {
+                    profile.expanded(expansion.size());
+                }
+                for (int j = 0; j < expansion.size(); j++)
+                {
+                    relax(open, nSlot, expansion.node(j), expansion.edge(j), expansion.cost(j));
+                }
+                
+                if (sources.containsKey(nId))
+                {
+                    relaxSource(nSlot, skyline);
+                }
+            }
+        }
+        
+        return results(skyline);
+    }
+    
+    /**
+     * Marks the nodes reachable from the start nodes over outgoing edges, breadth
+     * first. Returns false if the deadline, a cancellation or the expansion
+     * budget stopped the search meanwhile; the sweep itself expands nothing.
+     */
+    private boolean sweepForward(long[] startNodes)
+    {
+        reached = new LongIntMap(1024);
+        reachedNodes = new long[1024];
+        for (long n : startNodes)
+        {
+            mark(n);
+        }
+        for (int i = 0; i < reachedCount; i++)
+        {
+            if (!mayContinue())
+            {
+                return false;
+            }
+            batchNodes[0] = reachedNodes[i];
+            graph.expandOutgoing(batchNodes, 0, 1, expansions);
+            Expansion expansion = expansions[0];
+            for (int j = 0; j < expansion.size(); j++)
+            {
+                mark(expansion.node(j));
+            }
+        }
+        return true;
+    }
+    
+    private void mark(long n)
+    {
+        if (reached.containsKey(n))
+        {
+            return;
+        }
+        reached.put(n, 1);
+        if (reachedCount == reachedNodes.length)
+        {
+            reachedNodes = Arrays.copyOf(reachedNodes, reachedCount << 1);
+        }
+        reachedNodes[reachedCount++] = n;
+    }
+    
+    /**
+     * True in a top-k search once no path of at least the given length would
+     * enter the k best. A path of h edges, virtual ones included, is at least h
+     * long and collects at most h - 1 times the best edge reward, so the best
+     * such path is found over the hop counts the limit allows.
+     */
+    private boolean topKSettled(int shortest)
+    {
+        if (topPaths == null)
+        {
+            return false;
+        }
+        if (shortest != settledLength)
+        {
+            int maxEdgeReward = rewards.maxEdgeReward();
+            double best = Double.NEGATIVE_INFINITY;
+            for (int hops = 2; hops <= maxHops; hops++)
+            {
+                best = Math.max(best, topPaths.score(Math.max(shortest, hops), (hops - 1) * maxEdgeReward));
+            }
+            settledLength = shortest;
+            settledScore = best;
+        }
+        return !topPaths.admits(settledScore);
+    }
+    
+    private ArrayList<SkylinePath> results(ParetoFrontier<SkylinePath> skyline)
+    {
+        return topPaths != null ? topPaths.values() : new ArrayList<SkylinePath>(skyline.values());
+    }
+    
+    /**
+     * Returns the incoming edges of the node just popped.
+     */
+    private Expansion expandIncoming(long n)
+    {
+        batchNodes[0] = n;
+        graph.expandIncoming(batchNodes, 0, 1, expansions);
+        return expansions[0];
+    }
+    
+    /**
+     * Sets the deadline to the earlier of the time out, counted from now, and
+     * the deadline of the query options. A time out too large to add to the
+     * clock counts as none.
+     */
+    private void startClock()
+    {
+        hasDeadline = timeOut < Long.MAX_VALUE / 1000000;
+        deadline = hasDeadline ? System.nanoTime() + timeOut * 1000000 : 0;
+        if (options.hasDeadline() && (!hasDeadline || options.getDeadline() - deadline < 0))
+        {
+            deadline = options.getDeadline();
+            hasDeadline = true;
+        }
+    }
+    
+    /**
+     * Checks the expansion budget on every iteration, and the cancellation token
+     * and the deadline on every CHECK_INTERVAL_MASK + 1 iterations only, so the
+     * loop does not read the clock for every node.
+     */
+    private boolean mayContinue()
+    {
+        if (stopped)
+        {
+            return false;
+        }
+        if (expanded >= maxExpansions)
+        {
+            return stop(StopReason.BUDGET_EXHAUSTED);
+        }
+        if ((iterations++ & CHECK_INTERVAL_MASK) == 0)
+        {
+            if (cancellation != null && cancellation.isCancelled())
+            {
+                return stop(StopReason.CANCELLED);
+            }
+            if (hasDeadline && System.nanoTime() - deadline >= 0)
+            {
+                return stop(StopReason.TIMED_OUT);
+            }
+        }
+        return true;
+    }
+    
+    private boolean stop(StopReason reason)
+    {
+        stopped = true;
+        stopReason = reason;
+        return false;
+    }
+    
+    private int poll(NodeHeap open)
+    {
+        if (QueryProfile.ENABLED)
+        {
+            profile.open(open.size());
+            profile.popped++;
+        }
+        return open.poll();
+    }
+    
+    /**
+     * Relaxes the virtual edges from every end node to the super-sink.
+     */
+    private void relaxSink(NodeHeap open, int tSlot, long[] endNodes)
+    {
+        for (long m : endNodes)
+        {
+            relax(open, tSlot, m, SINK_RELATIONSHIP, rewards.cost(0, m));
+        }
+    }
+    
+    /**
+     * Relaxes the edge between the expanded node and its neighbour m, with the
+     * given successor edge and packed cost.
+     * An upper bound is kept only if its path can still be closed within the
+     * hop limit by the virtual edge at the other end.
+     */
+    private void relax(NodeHeap open, int nSlot, long m, long successor, long cost)
+    {
+        if (QueryProfile.ENABLED)
+        {
+            profile.relaxations++;
+        }
+        int mSlot = labels.slot(m);
+        if (mSlot < 0)
+        {
+            if ((hopsFromSources != null && hopsFromSources.hops(m) == HopBounds.UNREACHABLE)
+                    || (reached != null && !reached.containsKey(m)))
+            {
+                if (QueryProfile.ENABLED)
+                {
+                    profile.unreachableSkips++;
+                }
+                return;
+            }
+            mSlot = labels.insert(m);
+        }
+        
+        int upperBound = labels.upperBoundAt(nSlot) + RewardTable.reward(cost);
+        int hops = labels.upperHopsAt(nSlot) + 1;
+        if (upperBound > labels.upperBoundAt(mSlot))
+        {
+            if (hops < maxHops)
+            {
+                labels.setUpperBound(mSlot, upperBound, successor, hops);
+                open.update(mSlot);
+                if (QueryProfile.ENABLED)
+                {
+                    profile.upperBoundImprovements++;
+                }
+            }
+            else if (QueryProfile.ENABLED)
+            {
+                profile.maxHopsRejections++;
+            }
+        }
+
+        int lowerBound = labels.lowerBoundAt(nSlot) + RewardTable.length(cost);
+        if (lowerBound < labels.lowerBoundAt(mSlot)) 
+        {
+            labels.setLowerBound(mSlot, lowerBound, successor);
+            open.update(mSlot);
+            if (QueryProfile.ENABLED)
+            {
+                profile.lowerBoundImprovements++;
+            }
+        }
+    }
+    
+    /**
+     * Relaxes the virtual edge from the super-source to the expanded start node
+     * and adds the resulting paths to the skyline.
+     */
+    private void relaxSource(int nSlot, ParetoFrontier<SkylinePath> skyline)
+    {
+        boolean sLbModified = false;
+        boolean sUbModified = false;
+        long n = labels.node(nSlot);
+        long cost = rewards.cost(0, SOURCE);
+        
+        int upperBound = labels.upperBoundAt(nSlot) + RewardTable.reward(cost);
+        int hops = labels.upperHopsAt(nSlot) + 1;
+        SkylinePath upperPath = null;
+        if (upperBound > sourceBounds[UPPER_BOUND] && hops <= maxHops)
+        {
+            // Labels updated since may have lengthened the successor chain, so
+            // the path itself is held to the hop limit with its virtual edges
+            upperPath = reconstructPath(n, true);
+            hops = upperPath == null ? hops : upperPath.getRelationships().length + 2;
+        }
+        if (upperBound > sourceBounds[UPPER_BOUND] && hops <= maxHops) 
+        {
+            sourceBounds[UPPER_BOUND] = upperBound;
+            sourceSuccessors[UPPER_BOUND] = n;
+            sUbModified = true;
+        }
+        else if (QueryProfile.ENABLED && upperBound > sourceBounds[UPPER_BOUND])
+        {
+            profile.maxHopsRejections++;
+        }
+        
+        int lowerBound = labels.lowerBoundAt(nSlot) + RewardTable.length(cost);
+        if (lowerBound < sourceBounds[LOWER_BOUND]) 
+        {
+            sourceBounds[LOWER_BOUND] = lowerBound;
+            sourceSuccessors[LOWER_BOUND] = n;
+            sLbModified = true;
+        }
+        
+        // Path construction
+        if (sLbModified)
+        {
+            addToSkyline(reconstructPath(sourceSuccessors[LOWER_BOUND], false), skyline);
+        }
+        if (sUbModified)
+        {
+            addToSkyline(upperPath, skyline);
+        }
+    }
+    
+    private void addToSkyline(SkylinePath p, ParetoFrontier<SkylinePath> skyline)
+    {
+        // Dominated paths may still be among the best scoring ones
+        if (p != null && topPaths != null)
+        {
+            topPaths.offer(p);
+        }
+        if (p == null || pathGloballyDominated(p, skyline))
+        {
+            if (QueryProfile.ENABLED)
+            {
+                profile.skylineRejections++;
+            }
+        }
+        else
+        {
+            int size = skyline.size();
+            skyline.add(p.getLength(), p.getReward(), p, listener == null ? null : evicted);
+            if (QueryProfile.ENABLED)
+            {
+                profile.skylineAdds++;
+                profile.skylineEvictions += size + 1 - skyline.size();
+            }
+            if (listener != null)
+            {
+                for (SkylinePath path : evicted)
+                {
+                    listener.pathRemoved(path);
+                }
+                evicted.clear();
+                if (!listener.pathAdded(p))
+                {
+                    stop(StopReason.STOPPED_BY_LISTENER);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Builds the path of the lower or upper bound from the start node first.
+     * Returns null when its chain of successors no longer leads to the sink, as
+     * later label updates can close it into a cycle.
+     */
+    private SkylinePath reconstructPath(long first, boolean upper)
+    {
+        ArrayList<Long> edges = new ArrayList<Long>();
+        LongIntMap visited = new LongIntMap(16);
+        
+        long m = first;
+        long edge = labels.successor(m, upper);
+        while (edge != SINK_RELATIONSHIP)
+        {
+            if (edge == LabelStore.NO_RELATIONSHIP || visited.containsKey(edge))
+            {
+                return null;
+            }
+            edges.add(edge);
+            visited.put(edge, 1);
+            m = graph.endNode(edge);
+            edge = labels.successor(m, upper);
+        }
+        
+        // Virtual edges from s and to t are part of the path bounds
+        long cost = rewards.cost(0, first);
+        int length = RewardTable.length(cost);
+        int reward = RewardTable.reward(cost);
+        long[] nodeIds = new long[edges.size() + 1];
+        long[] relIds = new long[edges.size()];
+        nodeIds[0] = first;
+        for (int j = 0; j < relIds.length; j++)
+        {
+            long e = edges.get(j);
+            nodeIds[j + 1] = graph.endNode(e);
+            relIds[j] = graph.relationshipId(e);
+            cost = graph.cost(e);
+            length += RewardTable.length(cost);
+            reward += RewardTable.reward(cost);
+        }
+        cost = rewards.cost(0, SINK);
+        length += RewardTable.length(cost);
+        reward += RewardTable.reward(cost);
+        
+        return new SkylinePath(nodeIds, relIds, length, reward);
+    }
+    
+    /**
+     * A path through n is at least one virtual edge longer than the lower bound
+     * of n, so n is compared to the skyline with that length. A top-k search
+     * skips no node on its score: the labels it leaves uncorrected could keep
+     * paths the full search overwrites, and the k best would differ from the k
+     * best of the full search. It ends early instead, in topKSettled.
+     */
+    private boolean globallyDominated(int nSlot, ParetoFrontier<SkylinePath> S)
+    {
+        boolean dominated = !S.isEmpty() && S.strictlyDominates(labels.lowerBoundAt(nSlot) + 1, labels.upperBoundAt(nSlot));
+        if (QueryProfile.ENABLED && dominated)
+        {
+            profile.dominatedSkips++;
+        }
+        return dominated;
+    }
+    
+    private boolean pathGloballyDominated(SkylinePath p, ParetoFrontier<SkylinePath> S)
+    {
+        return S.dominates(p.getLength(), p.getReward());
+    }
+}
@@ -0,0 +1,107 @@
+package preferencepaths;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+/**
+ * Evaluated result of one preference or exclude query: the node ids it returned,
+ * in a compressed set, and the relationship type names.
+ */
+public class PreferenceSet
+{
+    private final NodeIdSet nodes;
+    private final String[] typeNames;
+    private volatile byte[] digest;
+
+    public PreferenceSet(NodeIdSet nodes, String[] typeNames)
+    {
+        this.nodes = nodes;
+        this.typeNames = typeNames;
+    }
+
+    /**
+     * Splits query result values into node ids and relationship type names.
+     */
+    public static PreferenceSet of(Iterable<String> values)
+    {
+        Builder builder = new Builder();
+        for (String value : values)
+        {
+            builder.add(value);
+        }
+        return builder.build();
+    }
+
+    public NodeIdSet getNodes()
+    {
+        return nodes;
+    }
+
+    public String[] getTypeNames()
+    {
+        return typeNames;
+    }
+
+    /**
+     * Returns a hash of the node ids and the sorted type names, equal for equal
+     * sets whatever order their query returned them in. Computed on first use,
+     * as cached sets are hashed by every query that uses them.
+     */
+    public byte[] digest()
+    {
+        byte[] hash = digest;
+        if (hash == null)
+        {
+            MessageDigest md = QueryResultCache.newDigest();
+            nodes.update(md);
+            String[] names = typeNames.clone();
+            Arrays.sort(names);
+            for (String name : names)
+            {
+                md.update(name.getBytes(StandardCharsets.UTF_8));
+                md.update((byte) 0);
+            }
+            hash = md.digest();
+            digest = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * Collects the values of a query result as they are read, keeping node ids
+     * in a primitive buffer.
+     */
+    public static class Builder
+    {
+        private long[] ids = new long[1024];
+        private int count;
+        private final ArrayList<String> typeNames = new ArrayList<String>();
+
+        public void add(String value)
+        {
+            if (!RewardTable.isNodeId(value))
+            {
+                typeNames.add(value);
+                return;
+            }
+            add(Long.parseLong(value));
+        }
+
+        public void add(long id)
+        {
+            if (count == ids.length)
+            {
+                ids = Arrays.copyOf(ids, count << 1);
+            }
+            ids[count++] = id;
+        }
+
+        public PreferenceSet build()
+        {
+            return new PreferenceSet(NodeIdSet.of(ids, count), typeNames.toArray(new String[typeNames.size()]));
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package preferencepaths;
+
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+
+/**
+ * Evaluated preference and exclude sets, by query text. Each entry records the
+ * node labels and relationship types its query matches on, read from the node
+ * and relationship patterns of the Cypher text, and is dropped when a committed
+ * transaction changes nodes with one of those labels or relationships of one of
+ * those types. A query naming no label or type depends on every change, and an
+ * untyped relationship pattern on every relationship change. Filters on the
+ * properties of unlabelled pattern nodes are not tracked.
+ *
+ * Registered as a transaction event handler of the database. The changes are
+ * collected before commit, while the changed entities can still be read, and
+ * applied after it.
+ */
+public class PreferenceSetCache implements TransactionEventHandler<PreferenceSetCache.Changes>
+{
+    private static final Pattern NODE_PATTERN = Pattern.compile("\\(\\s*\\w*\\s*((?::\\s*`?\\w+`?\\s*)+)");
+    private static final Pattern RELATIONSHIP_PATTERN = Pattern.compile("-\\s*\\[([^\\]]*)\\]");
+    private static final Pattern BARE_RELATIONSHIP = Pattern.compile("<?--");
+    private static final Pattern NAME = Pattern.compile("\\w+");
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Returns the cached set of a query, or null.
+     */
+    public PreferenceSet get(String query)
+    {
+        Entry entry = entries.get(query);
+        return entry == null ? null : entry.set;
+    }
+
+    /**
+     * Returns the current generation, to be read before evaluating a query and
+     * handed to put with its result.
+     */
+    public long generation()
+    {
+        return generation.get();
+    }
+
+    /**
+     * Caches the set of a query evaluated at the given generation, unless a
+     * commit changed the database since.
+     */
+    public void put(String query, PreferenceSet set, long generation)
+    {
+        Entry entry = new Entry(query, set);
+        entries.put(query, entry);
+        if (this.generation.get() != generation)
+        {
+            entries.remove(query, entry);
+        }
+    }
+
+    public void clear()
+    {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    @Override
+    public Changes beforeCommit(TransactionData data) throws Exception
+    {
+        Changes changes = new Changes();
+        changes.nodes = data.createdNodes().iterator().hasNext() || data.deletedNodes().iterator().hasNext();
+        for (LabelEntry entry : data.assignedLabels())
+        {
+            changes.addLabel(entry.label());
+        }
+        for (LabelEntry entry : data.removedLabels())
+        {
+            changes.addLabel(entry.label());
+        }
+        for (PropertyEntry<Node> entry : data.assignedNodeProperties())
+        {
+            changes.addLabels(data, entry.entity());
+        }
+        for (PropertyEntry<Node> entry : data.removedNodeProperties())
+        {
+            changes.addLabels(data, entry.entity());
+        }
+        for (Relationship r : data.createdRelationships())
+        {
+            changes.addType(r);
+        }
+        for (Relationship r : data.deletedRelationships())
+        {
+            try
+            {
+                changes.addType(r);
+            }
+            catch (NotFoundException e)
+            {
+                // The type of a deleted relationship may no longer be readable
+                changes.anyType = true;
+            }
+        }
+        for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties())
+        {
+            changes.addType(entry.entity());
+        }
+        for (PropertyEntry<Relationship> entry : data.removedRelationshipProperties())
+        {
+            changes.addType(entry.entity());
+        }
+        return changes;
+    }
+
+    @Override
+    public void afterCommit(TransactionData data, Changes changes)
+    {
+        if (changes == null || changes.isEmpty())
+        {
+            return;
+        }
+        generation.incrementAndGet();
+        for (Entry entry : entries.values())
+        {
+            if (entry.affectedBy(changes))
+            {
+                entries.remove(entry.query, entry);
+            }
+        }
+    }
+
+    @Override
+    public void afterRollback(TransactionData data, Changes changes)
+    {
+    }
+
+    private static class Entry
+    {
+        final String query;
+        final PreferenceSet set;
+        final HashSet<String> labels = new HashSet<String>();
+        final HashSet<String> types = new HashSet<String>();
+        boolean anyRelationship;
+
+        Entry(String query, PreferenceSet set)
+        {
+            this.query = query;
+            this.set = set;
+
+            Matcher nodes = NODE_PATTERN.matcher(query);
+            while (nodes.find())
+            {
+                Matcher names = NAME.matcher(nodes.group(1));
+                while (names.find())
+                {
+                    labels.add(names.group());
+                }
+            }
+            Matcher relationships = RELATIONSHIP_PATTERN.matcher(query);
+            while (relationships.find())
+            {
+                String pattern = relationships.group(1);
+                int colon = pattern.indexOf(':');
+                if (colon < 0)
+                {
+                    anyRelationship = true;
+                    continue;
+                }
+                // Variable length suffixes such as *1..3 carry no names
+                Matcher names = NAME.matcher(pattern.substring(colon).replaceAll("\\*.*", ""));
+                while (names.find())
+                {
+                    types.add(names.group());
+                }
+            }
+            anyRelationship |= BARE_RELATIONSHIP.matcher(query).find();
+        }
+
+        boolean affectedBy(Changes changes)
+        {
+            if (labels.isEmpty() && types.isEmpty())
+            {
+                return true;
+            }
+            if (changes.anyType && (anyRelationship || !types.isEmpty()))
+            {
+                return true;
+            }
+            if (anyRelationship && !changes.types.isEmpty())
+            {
+                return true;
+            }
+            for (String label : changes.labels)
+            {
+                if (labels.contains(label))
+                {
+                    return true;
+                }
+            }
+            for (String type : changes.types)
+            {
+                if (types.contains(type))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Labels and relationship types touched by one transaction.
+     */
+    static class Changes
+    {
+        final HashSet<String> labels = new HashSet<String>();
+        final HashSet<String> types = new HashSet<String>();
+        boolean nodes;
+        boolean anyType;
+
+        void addLabel(Label label)
+        {
+            nodes = true;
+            labels.add(label.name());
+        }
+
+        void addLabels(TransactionData data, Node n)
+        {
+            nodes = true;
+            if (data.isDeleted(n))
+            {
+                return;
+            }
+            for (Label label : n.getLabels())
+            {
+                labels.add(label.name());
+            }
+        }
+
+        void addType(Relationship r)
+        {
+            types.add(r.getType().name());
+        }
+
+        boolean isEmpty()
+        {
+            return !nodes && !anyType && types.isEmpty();
+        }
+    }
+}
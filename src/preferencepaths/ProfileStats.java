@@ -0,0 +1,237 @@
+package preferencepaths;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+
+/**
+ * Sums the profiles of finished queries for JMX. Queries may finish on several
+ * threads at once, so the totals are atomic; a snapshot read while a profile is
+ * being added may mix counters of before and after it.
+ */
+public class ProfileStats implements ProfileStatsMBean
+{
+    public static final String OBJECT_NAME = "PreferencePaths:type=ProfileStats";
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong popped = new AtomicLong();
+    private final AtomicLong dominatedSkips = new AtomicLong();
+    private final AtomicLong relaxations = new AtomicLong();
+    private final AtomicLong lowerBoundImprovements = new AtomicLong();
+    private final AtomicLong upperBoundImprovements = new AtomicLong();
+    private final AtomicLong maxHopsRejections = new AtomicLong();
+    private final AtomicLong unreachableSkips = new AtomicLong();
+    private final AtomicLong skylineAdds = new AtomicLong();
+    private final AtomicLong skylineEvictions = new AtomicLong();
+    private final AtomicLong skylineRejections = new AtomicLong();
+    private final AtomicLong peakOpen = new AtomicLong();
+    private final AtomicLong seedNanos = new AtomicLong();
+    private final AtomicLong pruneNanos = new AtomicLong();
+    private final AtomicLong rewardNanos = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+    private final AtomicLong joinNanos = new AtomicLong();
+    private final AtomicLongArray expansionSizes = new AtomicLongArray(QueryProfile.BUCKETS);
+    private final AtomicLongArray queryMillis = new AtomicLongArray(QueryProfile.BUCKETS);
+
+    /**
+     * Creates the statistics and registers them with the platform MBean server.
+     * They are still returned, unregistered, if JMX refuses them.
+     */
+    public static ProfileStats register()
+    {
+        ProfileStats stats = new ProfileStats();
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName(OBJECT_NAME));
+        }
+        catch (JMException e)
+        {
+            System.err.println("Profile statistics not registered: " + e.getMessage());
+        }
+        return stats;
+    }
+
+    /**
+     * Adds the profile of a query that took the given time end to end.
+     */
+    public void record(QueryProfile profile, long elapsedNanos)
+    {
+        queries.incrementAndGet();
+        popped.addAndGet(profile.popped);
+        dominatedSkips.addAndGet(profile.dominatedSkips);
+        relaxations.addAndGet(profile.relaxations);
+        lowerBoundImprovements.addAndGet(profile.lowerBoundImprovements);
+        upperBoundImprovements.addAndGet(profile.upperBoundImprovements);
+        maxHopsRejections.addAndGet(profile.maxHopsRejections);
+        unreachableSkips.addAndGet(profile.unreachableSkips);
+        skylineAdds.addAndGet(profile.skylineAdds);
+        skylineEvictions.addAndGet(profile.skylineEvictions);
+        skylineRejections.addAndGet(profile.skylineRejections);
+        seedNanos.addAndGet(profile.seedNanos);
+        pruneNanos.addAndGet(profile.pruneNanos);
+        rewardNanos.addAndGet(profile.rewardNanos);
+        searchNanos.addAndGet(profile.searchNanos);
+        joinNanos.addAndGet(profile.joinNanos);
+        for (int i = 0; i < QueryProfile.BUCKETS; i++)
+        {
+            if (profile.expansionSizes[i] != 0)
+            {
+                expansionSizes.addAndGet(i, profile.expansionSizes[i]);
+            }
+        }
+        queryMillis.incrementAndGet(QueryProfile.bucket(elapsedNanos / 1000000));
+
+        long peak = peakOpen.get();
+        while (profile.peakOpen > peak && !peakOpen.compareAndSet(peak, profile.peakOpen))
+        {
+            peak = peakOpen.get();
+        }
+    }
+
+    @Override
+    public long getQueries()
+    {
+        return queries.get();
+    }
+
+    @Override
+    public long getPopped()
+    {
+        return popped.get();
+    }
+
+    @Override
+    public long getDominatedSkips()
+    {
+        return dominatedSkips.get();
+    }
+
+    @Override
+    public long getRelaxations()
+    {
+        return relaxations.get();
+    }
+
+    @Override
+    public long getLowerBoundImprovements()
+    {
+        return lowerBoundImprovements.get();
+    }
+
+    @Override
+    public long getUpperBoundImprovements()
+    {
+        return upperBoundImprovements.get();
+    }
+
+    @Override
+    public long getMaxHopsRejections()
+    {
+        return maxHopsRejections.get();
+    }
+
+    @Override
+    public long getUnreachableSkips()
+    {
+        return unreachableSkips.get();
+    }
+
+    @Override
+    public long getSkylineAdds()
+    {
+        return skylineAdds.get();
+    }
+
+    @Override
+    public long getSkylineEvictions()
+    {
+        return skylineEvictions.get();
+    }
+
+    @Override
+    public long getSkylineRejections()
+    {
+        return skylineRejections.get();
+    }
+
+    @Override
+    public int getPeakOpen()
+    {
+        return (int) peakOpen.get();
+    }
+
+    @Override
+    public long getSeedMillis()
+    {
+        return seedNanos.get() / 1000000;
+    }
+
+    @Override
+    public long getPruneMillis()
+    {
+        return pruneNanos.get() / 1000000;
+    }
+
+    @Override
+    public long getRewardMillis()
+    {
+        return rewardNanos.get() / 1000000;
+    }
+
+    @Override
+    public long getSearchMillis()
+    {
+        return searchNanos.get() / 1000000;
+    }
+
+    @Override
+    public long getJoinMillis()
+    {
+        return joinNanos.get() / 1000000;
+    }
+
+    @Override
+    public long[] getExpansionSizes()
+    {
+        return toArray(expansionSizes);
+    }
+
+    @Override
+    public long[] getQueryMillis()
+    {
+        return toArray(queryMillis);
+    }
+
+    @Override
+    public void reset()
+    {
+        AtomicLong[] counters = {
+            queries, popped, dominatedSkips, relaxations, lowerBoundImprovements, upperBoundImprovements,
+            maxHopsRejections, unreachableSkips, skylineAdds, skylineEvictions, skylineRejections, peakOpen,
+            seedNanos, pruneNanos, rewardNanos, searchNanos, joinNanos
+        };
+        for (AtomicLong counter : counters)
+        {
+            counter.set(0);
+        }
+        for (int i = 0; i < QueryProfile.BUCKETS; i++)
+        {
+            expansionSizes.set(i, 0);
+            queryMillis.set(i, 0);
+        }
+    }
+
+    private static long[] toArray(AtomicLongArray buckets)
+    {
+        long[] values = new long[buckets.length()];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = buckets.get(i);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,53 @@
+package preferencepaths;
+
+/**
+ * Totals of the query profiles recorded since start up, as exposed over JMX.
+ */
+public interface ProfileStatsMBean
+{
+    long getQueries();
+
+    long getPopped();
+
+    long getDominatedSkips();
+
+    long getRelaxations();
+
+    long getLowerBoundImprovements();
+
+    long getUpperBoundImprovements();
+
+    long getMaxHopsRejections();
+
+    long getUnreachableSkips();
+
+    long getSkylineAdds();
+
+    long getSkylineEvictions();
+
+    long getSkylineRejections();
+
+    int getPeakOpen();
+
+    long getSeedMillis();
+
+    long getPruneMillis();
+
+    long getRewardMillis();
+
+    long getSearchMillis();
+
+    long getJoinMillis();
+
+    /**
+     * Power of two buckets of the expanded node degrees.
+     */
+    long[] getExpansionSizes();
+
+    /**
+     * Power of two buckets of the query times in milliseconds.
+     */
+    long[] getQueryMillis();
+
+    void reset();
+}
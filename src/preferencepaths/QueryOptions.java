@@ -0,0 +1,248 @@
+package preferencepaths;
+
+/**
+ * Per query settings of a preference path query.
+ */
+public class QueryOptions
+{
+    public static final int DEFAULT_MAX_HOPS = 15;
+    public static final long DEFAULT_TIME_OUT = 900000;
+
+    /**
+     * Order of the open list: by lower bound, or by lower bound minus upper
+     * bound. AUTO leaves the choice to the {@link QueryPlanner}.
+     */
+    public enum Frontier
+    {
+        AUTO,
+        LOWER_BOUND,
+        BOUND_SPREAD
+    }
+
+    /**
+     * How start and end nodes that cannot be joined are dropped before the
+     * search: not at all, by probing the reachability index pair by pair, or by
+     * one traversal from each set. AUTO leaves the choice to the planner, which
+     * does not prune preference path queries.
+     */
+    public enum Pruning
+    {
+        AUTO,
+        NONE,
+        INDEX_PROBES,
+        TRAVERSAL
+    }
+
+    private int maxHops = DEFAULT_MAX_HOPS;
+    private Frontier frontier = Frontier.AUTO;
+    private Pruning pruning = Pruning.AUTO;
+    private long timeOut = DEFAULT_TIME_OUT;
+    private boolean reachabilityPruning;
+    private SkylineListener listener;
+    private int topK;
+    private PathScorer scorer = new WeightedScore(1, 1);
+    private boolean hasDeadline;
+    private long deadline;
+    private long maxExpansions = Long.MAX_VALUE;
+    private CancellationToken cancellation;
+    private boolean resultCacheEnabled = true;
+
+    public QueryOptions()
+    {
+    }
+
+    /**
+     * Copies every setting of other.
+     */
+    public QueryOptions(QueryOptions other)
+    {
+        maxHops = other.maxHops;
+        frontier = other.frontier;
+        pruning = other.pruning;
+        timeOut = other.timeOut;
+        reachabilityPruning = other.reachabilityPruning;
+        listener = other.listener;
+        topK = other.topK;
+        scorer = other.scorer;
+        hasDeadline = other.hasDeadline;
+        deadline = other.deadline;
+        maxExpansions = other.maxExpansions;
+        cancellation = other.cancellation;
+        resultCacheEnabled = other.resultCacheEnabled;
+    }
+
+    /**
+     * Maximum number of edges of an upper bound path, counting the virtual edges
+     * from the super-source and to the super-sink.
+     */
+    public int getMaxHops()
+    {
+        return maxHops;
+    }
+
+    public void setMaxHops(int maxHops)
+    {
+        this.maxHops = maxHops;
+    }
+
+    public Frontier getFrontier()
+    {
+        return frontier;
+    }
+
+    public void setFrontier(Frontier frontier)
+    {
+        this.frontier = frontier;
+    }
+
+    public Pruning getPruning()
+    {
+        return pruning;
+    }
+
+    public void setPruning(Pruning pruning)
+    {
+        this.pruning = pruning;
+    }
+
+    /**
+     * Whether a breadth first sweep from the start nodes first marks every node
+     * they reach, so the backward search labels no other node. The skyline is the
+     * same either way. The sweep visits all the start nodes reach, so it only
+     * pays when the backward search would spend most of its work on nodes they
+     * cannot reach. A landmark index prunes many of those nodes without the sweep.
+     */
+    public boolean isReachabilityPruning()
+    {
+        return reachabilityPruning;
+    }
+
+    public void setReachabilityPruning(boolean reachabilityPruning)
+    {
+        this.reachabilityPruning = reachabilityPruning;
+    }
+
+    /**
+     * Listener notified of skyline insertions and evictions, or null. Batch
+     * queries take one listener per query instead.
+     */
+    public SkylineListener getListener()
+    {
+        return listener;
+    }
+
+    public void setListener(SkylineListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Number of best scoring paths to return instead of the skyline, or 0 for
+     * the skyline. A top-k search expands the same nodes as the full search;
+     * when ordered by lower bound, it only stops early once no open label can
+     * beat the k-th path found.
+     */
+    public int getTopK()
+    {
+        return topK;
+    }
+
+    public void setTopK(int topK)
+    {
+        this.topK = topK;
+    }
+
+    /**
+     * Scoring of top-k paths; by default reward minus length.
+     */
+    public PathScorer getScorer()
+    {
+        return scorer;
+    }
+
+    public void setScorer(PathScorer scorer)
+    {
+        this.scorer = scorer;
+    }
+
+    public void setTopK(int topK, double lengthWeight, double rewardWeight)
+    {
+        this.topK = topK;
+        this.scorer = new WeightedScore(lengthWeight, rewardWeight);
+    }
+
+    /**
+     * Time, on the System.nanoTime clock, by which the search stops and returns
+     * its skyline so far. Applies on top of the time out.
+     */
+    public long getDeadline()
+    {
+        return deadline;
+    }
+
+    public boolean hasDeadline()
+    {
+        return hasDeadline;
+    }
+
+    public void setDeadline(long deadline)
+    {
+        this.deadline = deadline;
+        this.hasDeadline = true;
+    }
+
+    /**
+     * Milliseconds the search may run, counted from its start.
+     */
+    public long getTimeOut()
+    {
+        return timeOut;
+    }
+
+    public void setTimeOut(long timeOut)
+    {
+        this.timeOut = timeOut;
+    }
+
+    /**
+     * Most nodes the search expands before it stops.
+     */
+    public long getMaxExpansions()
+    {
+        return maxExpansions;
+    }
+
+    public void setMaxExpansions(long maxExpansions)
+    {
+        this.maxExpansions = maxExpansions;
+    }
+
+    /**
+     * Token another thread may use to cancel the query, or null.
+     */
+    public CancellationToken getCancellation()
+    {
+        return cancellation;
+    }
+
+    public void setCancellation(CancellationToken cancellation)
+    {
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * Whether the query may be answered from, and its result added to, the cache
+     * of complete results. A cached result is complete, so it is returned even
+     * when the expansion budget, the deadline or a cancellation would have
+     * stopped a new search short of it.
+     */
+    public boolean isResultCacheEnabled()
+    {
+        return resultCacheEnabled;
+    }
+
+    public void setResultCacheEnabled(boolean resultCacheEnabled)
+    {
+        this.resultCacheEnabled = resultCacheEnabled;
+    }
+}
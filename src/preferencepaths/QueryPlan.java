@@ -0,0 +1,78 @@
+package preferencepaths;
+
+/**
+ * Strategy chosen for one query by the {@link QueryPlanner}, with the sizes it
+ * was chosen from, reported back with the query result.
+ */
+public class QueryPlan
+{
+    private final QueryOptions.Pruning pruning;
+    private final QueryOptions.Frontier frontier;
+    private final int startNodes;
+    private final int endNodes;
+    private final int prunedStartNodes;
+    private final int prunedEndNodes;
+    private final int rewardedNodes;
+
+    public QueryPlan(QueryOptions.Pruning pruning, QueryOptions.Frontier frontier, int startNodes, int endNodes, int prunedStartNodes, int prunedEndNodes, int rewardedNodes)
+    {
+        this.pruning = pruning;
+        this.frontier = frontier;
+        this.startNodes = startNodes;
+        this.endNodes = endNodes;
+        this.prunedStartNodes = prunedStartNodes;
+        this.prunedEndNodes = prunedEndNodes;
+        this.rewardedNodes = rewardedNodes;
+    }
+
+    public QueryOptions.Pruning getPruning()
+    {
+        return pruning;
+    }
+
+    public QueryOptions.Frontier getFrontier()
+    {
+        return frontier;
+    }
+
+    /**
+     * Start nodes returned by the start query, before pruning.
+     */
+    public int getStartNodes()
+    {
+        return startNodes;
+    }
+
+    public int getEndNodes()
+    {
+        return endNodes;
+    }
+
+    /**
+     * Start nodes left for the search after pruning.
+     */
+    public int getPrunedStartNodes()
+    {
+        return prunedStartNodes;
+    }
+
+    public int getPrunedEndNodes()
+    {
+        return prunedEndNodes;
+    }
+
+    /**
+     * Nodes in the preference sets, counted once per set they appear in.
+     */
+    public int getRewardedNodes()
+    {
+        return rewardedNodes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "pruning=" + pruning + " (" + startNodes + "x" + endNodes + " -> " + prunedStartNodes + "x" + prunedEndNodes
+                + ") frontier=" + frontier + " (" + rewardedNodes + " rewarded nodes)";
+    }
+}
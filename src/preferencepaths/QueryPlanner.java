@@ -0,0 +1,79 @@
+package preferencepaths;
+
+/**
+ * Picks the strategy of a query from its seed and preference set sizes and the
+ * indexes at hand, for the settings the query options leave on AUTO. Pruning is
+ * chosen once the seeds are known, the frontier once the rewards are.
+ */
+public class QueryPlanner
+{
+    // Largest start by end set product still probed pair by pair on the index
+    static final int INDEX_PROBES = 256;
+
+    // Largest share of the graph, in percent, still sparse enough to order by spread
+    static final int SPARSE_REWARD_PERCENT = 5;
+
+    private QueryPlanner()
+    {
+    }
+
+    /**
+     * AUTO prunes nothing, like the search always did: a traversal from each set
+     * costs about as much as the search over the reachable part of the graph,
+     * and on the generated social graph it never won that back, from 8 to 256
+     * seeds per set. Pruning reads the store, so there is none on a snapshot.
+     */
+    public static QueryOptions.Pruning pruning(QueryOptions options, int startNodes, int endNodes, boolean indexAvailable, boolean storeAvailable)
+    {
+        QueryOptions.Pruning pruning = options.getPruning();
+        if (!storeAvailable || startNodes == 0 || endNodes == 0)
+        {
+            return QueryOptions.Pruning.NONE;
+        }
+        if (pruning == QueryOptions.Pruning.AUTO)
+        {
+            return QueryOptions.Pruning.NONE;
+        }
+        if (pruning == QueryOptions.Pruning.INDEX_PROBES && !indexAvailable)
+        {
+            return QueryOptions.Pruning.TRAVERSAL;
+        }
+        return pruning;
+    }
+
+    /**
+     * Pruning between two waypoint regions of a sequence query, which is always
+     * done, only its method chosen: index probes are cheap while there are few
+     * pairs.
+     */
+    public static QueryOptions.Pruning pruning(int startNodes, int endNodes, boolean indexAvailable)
+    {
+        if (indexAvailable && (long) startNodes * endNodes <= INDEX_PROBES)
+        {
+            return QueryOptions.Pruning.INDEX_PROBES;
+        }
+        return QueryOptions.Pruning.TRAVERSAL;
+    }
+
+    /**
+     * Completes the plan once the rewards are known. Ordering by bound spread
+     * steers the search to rewarding nodes, which pays when they are few; when
+     * they are common it drifts down long rewarding paths, and ordering by
+     * lower bound finishes sooner. The spread is only chosen when the graph size
+     * is known, from a snapshot or landmark index. Top-k searches always order
+     * by lower bound, which their early termination test needs.
+     *
+     * @param graphNodes nodes in the graph, or 0 if unknown
+     */
+    public static QueryPlan plan(QueryOptions options, QueryOptions.Pruning pruning, int startNodes, int endNodes, int prunedStartNodes, int prunedEndNodes,
+            RewardTable rewards, int rewardedNodes, long graphNodes)
+    {
+        QueryOptions.Frontier frontier = options.getFrontier();
+        if (frontier == QueryOptions.Frontier.AUTO)
+        {
+            boolean sparse = rewards.maxEdgeReward() > 0 && graphNodes > 0 && rewardedNodes * 100L < graphNodes * SPARSE_REWARD_PERCENT;
+            frontier = sparse && options.getTopK() == 0 ? QueryOptions.Frontier.BOUND_SPREAD : QueryOptions.Frontier.LOWER_BOUND;
+        }
+        return new QueryPlan(pruning, frontier, startNodes, endNodes, prunedStartNodes, prunedEndNodes, rewardedNodes);
+    }
+}
@@ -0,0 +1,184 @@
+package preferencepaths;
+
+/**
+ * Counters and phase times of one query. Profiling is switched on for the whole
+ * JVM with -Dpreferencepaths.profile=true; ENABLED is a constant, so with the
+ * switch off the JIT drops every guarded update and no profile is created.
+ *
+ * The search counters are updated on the search thread only, so they are plain
+ * fields. Expansion sizes are kept in a histogram of power of two buckets:
+ * bucket i counts the expansions of 2^(i-1) to 2^i - 1 edges, bucket 0 the
+ * empty ones.
+ */
+public class QueryProfile
+{
+    public static final boolean ENABLED = Boolean.getBoolean("preferencepaths.profile");
+
+    public static final int BUCKETS = 32;
+
+    long popped;
+    long dominatedSkips;
+    long relaxations;
+    long lowerBoundImprovements;
+    long upperBoundImprovements;
+    long maxHopsRejections;
+    long unreachableSkips;
+    long skylineAdds;
+    long skylineEvictions;
+    long skylineRejections;
+    int peakOpen;
+    final long[] expansionSizes = new long[BUCKETS];
+
+    long seedNanos;
+    long pruneNanos;
+    long rewardNanos;
+    long searchNanos;
+    long joinNanos;
+
+    void expanded(int edges)
+    {
+        expansionSizes[bucket(edges)]++;
+    }
+
+    void open(int size)
+    {
+        if (size > peakOpen)
+        {
+            peakOpen = size;
+        }
+    }
+
+    static int bucket(long value)
+    {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * Nodes taken off the open lists, including the dominated ones.
+     */
+    public long getPopped()
+    {
+        return popped;
+    }
+
+    /**
+     * Popped nodes skipped because the skyline dominated their bounds.
+     */
+    public long getDominatedSkips()
+    {
+        return dominatedSkips;
+    }
+
+    public long getRelaxations()
+    {
+        return relaxations;
+    }
+
+    public long getLowerBoundImprovements()
+    {
+        return lowerBoundImprovements;
+    }
+
+    public long getUpperBoundImprovements()
+    {
+        return upperBoundImprovements;
+    }
+
+    /**
+     * Better upper bounds dropped because their path could not close within
+     * the hop limit.
+     */
+    public long getMaxHopsRejections()
+    {
+        return maxHopsRejections;
+    }
+
+    /**
+     * Neighbours never labelled because the landmark bounds put them out of
+     * reach.
+     */
+    public long getUnreachableSkips()
+    {
+        return unreachableSkips;
+    }
+
+    public long getSkylineAdds()
+    {
+        return skylineAdds;
+    }
+
+    public long getSkylineEvictions()
+    {
+        return skylineEvictions;
+    }
+
+    /**
+     * Reconstructed paths the skyline dominated, or that no longer closed.
+     */
+    public long getSkylineRejections()
+    {
+        return skylineRejections;
+    }
+
+    public int getPeakOpen()
+    {
+        return peakOpen;
+    }
+
+    public long[] getExpansionSizes()
+    {
+        return expansionSizes.clone();
+    }
+
+    /**
+     * Time spent resolving the start and end nodes with Cypher.
+     */
+    public long getSeedNanos()
+    {
+        return seedNanos;
+    }
+
+    /**
+     * Time spent pruning unreachable start and end nodes.
+     */
+    public long getPruneNanos()
+    {
+        return pruneNanos;
+    }
+
+    /**
+     * Time spent waiting for the preference and exclude sets.
+     */
+    public long getRewardNanos()
+    {
+        return rewardNanos;
+    }
+
+    /**
+     * Time spent in the search, or in the leg searches of a sequence query.
+     */
+    public long getSearchNanos()
+    {
+        return searchNanos;
+    }
+
+    /**
+     * Time spent joining the legs of a sequence query.
+     */
+    public long getJoinNanos()
+    {
+        return joinNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "popped=" + popped + " dominated=" + dominatedSkips + " relaxations=" + relaxations
+                + " lb+=" + lowerBoundImprovements + " ub+=" + upperBoundImprovements
+                + " maxHops=" + maxHopsRejections + " unreachable=" + unreachableSkips
+                + " skyline+=" + skylineAdds + " skyline-=" + skylineEvictions + " rejected=" + skylineRejections
+                + " peakOpen=" + peakOpen
+                + " seed=" + seedNanos / 1000000 + "ms prune=" + pruneNanos / 1000000 + "ms rewards=" + rewardNanos / 1000000
+                + "ms search=" + searchNanos / 1000000 + "ms join=" + joinNanos / 1000000 + "ms";
+    }
+}
@@ -0,0 +1,72 @@
+package preferencepaths;
+
+import java.util.ArrayList;
+
+
+/**
+ * Result of one preference path query.
+ */
+public class QueryResult
+{
+    private final ArrayList<SkylinePath> paths;
+    private final QueryProfile profile;
+    private final StopReason stopReason;
+    private final QueryPlan plan;
+
+    public QueryResult(ArrayList<SkylinePath> paths)
+    {
+        this(paths, null);
+    }
+
+    public QueryResult(ArrayList<SkylinePath> paths, QueryProfile profile)
+    {
+        this(paths, profile, StopReason.COMPLETED, null);
+    }
+
+    public QueryResult(ArrayList<SkylinePath> paths, QueryProfile profile, StopReason stopReason, QueryPlan plan)
+    {
+        this.paths = paths;
+        this.profile = profile;
+        this.stopReason = stopReason;
+        this.plan = plan;
+    }
+
+    /**
+     * Returns the skyline paths ordered by increasing length, or for a top-k
+     * query the k best scoring paths, best first.
+     */
+    public ArrayList<SkylinePath> getPaths()
+    {
+        return paths;
+    }
+
+    /**
+     * Returns false when the search stopped early, in which case the paths are
+     * the best found so far.
+     */
+    public boolean isComplete()
+    {
+        return stopReason == StopReason.COMPLETED;
+    }
+
+    public StopReason getStopReason()
+    {
+        return stopReason;
+    }
+
+    /**
+     * Returns the profile of the query, or null when profiling is off.
+     */
+    public QueryProfile getProfile()
+    {
+        return profile;
+    }
+
+    /**
+     * Returns the strategy the planner chose, or null for sequence queries.
+     */
+    public QueryPlan getPlan()
+    {
+        return plan;
+    }
+}
@@ -0,0 +1,329 @@
+package preferencepaths;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+
+/**
+ * Results of complete preference path queries, keyed by a hash of what the
+ * search actually ran on: the resolved start and end ids, the preference and
+ * exclude sets and the options that shape the result. Different query texts
+ * that resolve to the same sets share an entry.
+ *
+ * The expansion budget, the deadline and the cancellation token are not part of
+ * the key: they only cut a search short, and a complete result answers the
+ * query whatever they are.
+ *
+ * Each entry keeps the nodes its search labelled and is dropped when a
+ * committed transaction creates or deletes a relationship at one of them.
+ * Changes to labels and properties are not tracked here: they change the
+ * resolved sets, and with them the key. Entries are evicted least recently
+ * used first once there are more than the maximum, or once their labelled
+ * nodes, which stand in for their size, add up to more than the node budget.
+ *
+ * Registered as a transaction event handler of the database, like the
+ * {@link PreferenceSetCache}.
+ */
+public class QueryResultCache implements TransactionEventHandler<QueryResultCache.Changes>
+{
+    private final int maxEntries;
+    private final long maxNodes;
+    // Least recently used first
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private final AtomicLong generation = new AtomicLong();
+    private long nodes;
+
+    public QueryResultCache(int maxEntries, long maxNodes)
+    {
+        this.maxEntries = maxEntries;
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Returns the key of a query, or null if its result must not be cached: the
+     * options turn the cache off, or a listener expects to be called back as the
+     * search runs.
+     * Preference sets keep their order, as it sets their rewards; the order of
+     * the ids and of the exclude sets does not matter.
+     */
+    public static Key key(long[] startIds, long[] endIds, ArrayList<PreferenceSet> preferenceSets, ArrayList<PreferenceSet> excludeSets, QueryOptions options)
+    {
+        if (!options.isResultCacheEnabled() || options.getListener() != null)
+        {
+            return null;
+        }
+        MessageDigest md = newDigest();
+        update(md, startIds);
+        update(md, endIds);
+        update(md, preferenceSets.size());
+        for (PreferenceSet set : preferenceSets)
+        {
+            md.update(set.digest());
+        }
+        byte[][] excludes = new byte[excludeSets.size()][];
+        for (int i = 0; i < excludes.length; i++)
+        {
+            excludes[i] = excludeSets.get(i).digest();
+        }
+        Arrays.sort(excludes, new Comparator<byte[]>()
+        {
+            @Override
+            public int compare(byte[] a, byte[] b)
+            {
+                return ByteBuffer.wrap(a).compareTo(ByteBuffer.wrap(b));
+            }
+        });
+        update(md, excludes.length);
+        for (byte[] exclude : excludes)
+        {
+            md.update(exclude);
+        }
+        update(md, options.getMaxHops());
+        update(md, options.getFrontier().ordinal());
+        update(md, options.getTopK());
+        return new Key(md.digest(), options.getTopK() > 0 ? options.getScorer() : null);
+    }
+
+    static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest md, long[] ids)
+    {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 8 * sorted.length);
+        buffer.putInt(0);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++)
+        {
+            if (i == 0 || sorted[i] != sorted[i - 1])
+            {
+                buffer.putLong(sorted[i]);
+                count++;
+            }
+        }
+        buffer.putInt(0, count);
+        buffer.flip();
+        md.update(buffer);
+    }
+
+    private static void update(MessageDigest md, int value)
+    {
+        md.update(ByteBuffer.allocate(4).putInt(0, value).array());
+    }
+
+    /**
+     * Returns the cached result of a query, or null.
+     */
+    public synchronized QueryResult get(Key key)
+    {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.result;
+    }
+
+    /**
+     * Returns the current generation, to be read before resolving a query and
+     * handed to put with its result.
+     */
+    public long generation()
+    {
+        return generation.get();
+    }
+
+    /**
+     * Caches the result of a query resolved at the given generation, unless a
+     * commit changed relationships since.
+     */
+    public synchronized void put(Key key, QueryResult result, NodeIdSet visited, long generation)
+    {
+        if (this.generation.get() != generation || visited.size() > maxNodes)
+        {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(result, visited));
+        if (previous != null)
+        {
+            nodes -= previous.visited.size();
+        }
+        nodes += visited.size();
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || nodes > maxNodes)
+        {
+            nodes -= eldest.next().visited.size();
+            eldest.remove();
+        }
+    }
+
+    public synchronized void clear()
+    {
+        generation.incrementAndGet();
+        entries.clear();
+        nodes = 0;
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    @Override
+    public Changes beforeCommit(TransactionData data) throws Exception
+    {
+        Changes changes = new Changes();
+        for (Relationship r : data.createdRelationships())
+        {
+            changes.add(r);
+        }
+        for (Relationship r : data.deletedRelationships())
+        {
+            try
+            {
+                changes.add(r);
+            }
+            catch (NotFoundException e)
+            {
+                // The ends of a deleted relationship may no longer be readable
+                changes.unknown = true;
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public void afterCommit(TransactionData data, Changes changes)
+    {
+        if (changes == null || changes.isEmpty())
+        {
+            return;
+        }
+        generation.incrementAndGet();
+        synchronized (this)
+        {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext())
+            {
+                Entry entry = it.next();
+                if (changes.affect(entry.visited))
+                {
+                    nodes -= entry.visited.size();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void afterRollback(TransactionData data, Changes changes)
+    {
+    }
+
+    /**
+     * Hash of a query, with the scorer of top-k queries, which is compared with
+     * equals as it cannot be hashed into bytes.
+     */
+    public static class Key
+    {
+        private final byte[] hash;
+        private final PathScorer scorer;
+
+        Key(byte[] hash, PathScorer scorer)
+        {
+            this.hash = hash;
+            this.scorer = scorer;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) o;
+            return Arrays.equals(hash, other.hash) && (scorer == null ? other.scorer == null : scorer.equals(other.scorer));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return ByteBuffer.wrap(hash).getInt() ^ (scorer == null ? 0 : scorer.hashCode());
+        }
+    }
+
+    private static class Entry
+    {
+        final QueryResult result;
+        final NodeIdSet visited;
+
+        Entry(QueryResult result, NodeIdSet visited)
+        {
+            this.result = result;
+            this.visited = visited;
+        }
+    }
+
+    /**
+     * End nodes of the relationships one transaction created or deleted.
+     */
+    static class Changes
+    {
+        private long[] nodes = new long[16];
+        private int count;
+        boolean unknown;
+
+        void add(Relationship r)
+        {
+            long start = r.getStartNode().getId();
+            long end = r.getEndNode().getId();
+            if (count + 2 > nodes.length)
+            {
+                nodes = Arrays.copyOf(nodes, nodes.length << 1);
+            }
+            nodes[count++] = start;
+            nodes[count++] = end;
+        }
+
+        boolean affect(NodeIdSet visited)
+        {
+            if (unknown)
+            {
+                return true;
+            }
+            for (int i = 0; i < count; i++)
+            {
+                if (visited.contains(nodes[i]))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isEmpty()
+        {
+            return count == 0 && !unknown;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package preferencepaths;
+
+import java.util.Arrays;
+
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+
+/**
+ * Rewards of the preference and exclude lists of one query. Node rewards are kept
+ * by primitive node id, or as whole node sets shared with the preference set
+ * cache, and relationship type rewards in a small array indexed by the types
+ * named in the lists, resolved when the table is built. The cost of an edge is
+ * returned packed in a long, length in the high and reward in the low half, so
+ * evaluating it never allocates.
+ */
+public class RewardTable
+{
+    private final int negativeReward;
+    private final LongIntMap nodeRewards;
+    private NodeIdSet[] nodeSets;
+    private int[] nodeSetRewards;
+    private RelationshipType[] types;
+    private int[] typeRewards;
+    private int maxNodeReward;
+
+    public RewardTable(int negativeReward, int expectedSize)
+    {
+        this.negativeReward = negativeReward;
+        nodeRewards = new LongIntMap(expectedSize);
+        nodeSets = new NodeIdSet[0];
+        nodeSetRewards = new int[0];
+        types = new RelationshipType[0];
+        typeRewards = new int[0];
+    }
+
+    /**
+     * Sets the reward of an entry returned by a preference or exclude query,
+     * either a node id or a relationship type name.
+     */
+    public void put(String entry, int reward)
+    {
+        if (isNodeId(entry))
+        {
+            nodeRewards.put(Long.parseLong(entry), reward);
+            maxNodeReward = Math.max(maxNodeReward, reward);
+            return;
+        }
+        for (int i = 0; i < types.length; i++)
+        {
+            if (types[i].name().equals(entry))
+            {
+                typeRewards[i] = reward;
+                return;
+            }
+        }
+        types = Arrays.copyOf(types, types.length + 1);
+        typeRewards = Arrays.copyOf(typeRewards, typeRewards.length + 1);
+        types[types.length - 1] = DynamicRelationshipType.withName(entry);
+        typeRewards[typeRewards.length - 1] = reward;
+    }
+
+    /**
+     * Sets the reward of every node of a set. A set takes precedence over the
+     * sets added before it and over single node entries.
+     */
+    public void putAll(NodeIdSet nodes, int reward)
+    {
+        nodeSets = Arrays.copyOf(nodeSets, nodeSets.length + 1);
+        nodeSetRewards = Arrays.copyOf(nodeSetRewards, nodeSetRewards.length + 1);
+        nodeSets[nodeSets.length - 1] = nodes;
+        nodeSetRewards[nodeSetRewards.length - 1] = reward;
+        if (nodes.size() > 0)
+        {
+            maxNodeReward = Math.max(maxNodeReward, reward);
+        }
+    }
+
+    public boolean hasNodeReward(long node)
+    {
+        for (int i = nodeSets.length - 1; i >= 0; i--)
+        {
+            if (nodeSets[i].contains(node))
+            {
+                return true;
+            }
+        }
+        return nodeRewards.containsKey(node);
+    }
+
+    public int nodeReward(long node)
+    {
+        for (int i = nodeSets.length - 1; i >= 0; i--)
+        {
+            if (nodeSets[i].contains(node))
+            {
+                return nodeSetRewards[i];
+            }
+        }
+        return nodeRewards.get(node, 0);
+    }
+
+    public int typeReward(Relationship rel)
+    {
+        for (int i = 0; i < types.length; i++)
+        {
+            if (rel.isType(types[i]))
+            {
+                return typeRewards[i];
+            }
+        }
+        return 0;
+    }
+
+    public int typeReward(String typeName)
+    {
+        for (int i = 0; i < types.length; i++)
+        {
+            if (types[i].name().equals(typeName))
+            {
+                return typeRewards[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the rewards of the given relationship type names, by position.
+     */
+    public int[] typeRewards(String[] typeNames)
+    {
+        int[] rewards = new int[typeNames.length];
+        for (int i = 0; i < typeNames.length; i++)
+        {
+            for (int j = 0; j < types.length; j++)
+            {
+                if (types[j].name().equals(typeNames[i]))
+                {
+                    rewards[i] = typeRewards[j];
+                }
+            }
+        }
+        return rewards;
+    }
+
+    /**
+     * Upper bound on the reward one edge adds to a path, counting the best type
+     * and the best node reward of the table.
+     */
+    public int maxEdgeReward()
+    {
+        int maxTypeReward = 0;
+        for (int reward : typeRewards)
+        {
+            maxTypeReward = Math.max(maxTypeReward, reward);
+        }
+        return maxTypeReward + maxNodeReward;
+    }
+
+    /**
+     * Packed length and reward of reaching node through rel. A null rel stands for
+     * a virtual edge, and negative ids for virtual nodes, neither with a reward.
+     */
+    public long cost(Relationship rel, long node)
+    {
+        return cost(rel == null ? 0 : typeReward(rel), node);
+    }
+
+    /**
+     * Packed length and reward of reaching node through an edge whose type has
+     * the given reward.
+     */
+    public long cost(int relCost, long node)
+    {
+        int totalLength = 1;
+        int totalCost = relCost;
+        if (relCost <= negativeReward)
+        {
+            totalLength += -relCost;
+        }
+        if (node >= 0)
+        {
+            int nodeCost = nodeReward(node);
+            totalCost += nodeCost;
+            if (nodeCost <= negativeReward)
+            {
+                totalLength += -nodeCost;
+            }
+        }
+        return pack(totalLength, totalCost);
+    }
+
+    public static long pack(int length, int reward)
+    {
+        return ((long) length << 32) | (reward & 0xFFFFFFFFL);
+    }
+
+    public static int length(long cost)
+    {
+        return (int) (cost >> 32);
+    }
+
+    public static int reward(long cost)
+    {
+        return (int) cost;
+    }
+
+    /**
+     * Returns true if a query result entry is a node id rather than a
+     * relationship type name.
+     */
+    public static boolean isNodeId(String entry)
+    {
+        if (entry.isEmpty())
+        {
+            return false;
+        }
+        for (int i = 0; i < entry.length(); i++)
+        {
+            if (!Character.isDigit(entry.charAt(i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,35 @@
+package preferencepaths;
+
+/**
+ * Graph as seen by one preference path search, with the rewards of its query
+ * already bound. Nodes are addressed by their Neo4j ids; edges by a handle of
+ * the implementation, which relationshipId maps back to the Neo4j id.
+ */
+public interface SearchGraph
+{
+    /**
+     * Fills out[i] with the incoming edges of nodes[i] for i in [from, to).
+     * Negative ids are virtual nodes and get no edges. Disjoint ranges may be
+     * expanded from several threads at once. The recorded cost of an edge
+     * charges the reward of its start node, the neighbour.
+     */
+    void expandIncoming(long[] nodes, int from, int to, Expansion[] out);
+
+    /**
+     * Fills out[i] with the outgoing edges of nodes[i] for i in [from, to), like
+     * expandIncoming. The recorded cost of an edge charges the reward of its
+     * start node, the expanded one.
+     */
+    void expandOutgoing(long[] nodes, int from, int to, Expansion[] out);
+
+    long startNode(long edge);
+
+    long endNode(long edge);
+
+    /**
+     * Packed cost of reaching the end node of an edge through it.
+     */
+    long cost(long edge);
+
+    long relationshipId(long edge);
+}
@@ -0,0 +1,114 @@
+package preferencepaths;
+
+import java.util.Arrays;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+
+/**
+ * Set to set reachability on the embedded Neo4j store. A multi-source breadth
+ * first search from a whole seed set marks every node reachable from any seed,
+ * so filtering a start set against an end set takes one forward and one
+ * backward traversal instead of a reachability probe per (start, end) pair.
+ * Each traversal stops as soon as every target has been reached. Must be
+ * called with a transaction open.
+ */
+public class SetReachability
+{
+    private final GraphDatabaseService graphDb;
+
+    public SetReachability(GraphDatabaseService graphDb)
+    {
+        this.graphDb = graphDb;
+    }
+
+    /**
+     * Keeps the start nodes that reach some end node and the end nodes reached
+     * by some start node, in their original order. Returns the surviving start
+     * and end ids, in that order.
+     */
+    public long[][] prune(long[] startIds, long[] endIds)
+    {
+        long[] ends = reachable(startIds, endIds, Direction.OUTGOING);
+        long[] starts = reachable(ends, startIds, Direction.INCOMING);
+        return new long[][] { starts, ends };
+    }
+
+    /**
+     * Returns the targets reachable from some seed by following edges in the given
+     * direction, in the order of targets. Every seed reaches itself.
+     */
+    public long[] reachable(long[] seeds, long[] targets, Direction direction)
+    {
+        LongIntMap targetIndex = new LongIntMap(targets.length);
+        for (int i = 0; i < targets.length; i++)
+        {
+            targetIndex.put(targets[i], i);
+        }
+        boolean[] found = new boolean[targets.length];
+        int remaining = targetIndex.size();
+
+        LongIntMap visited = new LongIntMap(Math.max(16, seeds.length * 4));
+        long[] queue = new long[Math.max(16, seeds.length)];
+        int head = 0;
+        int tail = 0;
+        for (long seed : seeds)
+        {
+            if (!visited.containsKey(seed))
+            {
+                visited.put(seed, 1);
+                queue = append(queue, tail++, seed);
+            }
+        }
+
+        while (head < tail && remaining > 0)
+        {
+            long n = queue[head++];
+            int t = targetIndex.get(n, -1);
+            if (t >= 0 && !found[t])
+            {
+                found[t] = true;
+                remaining--;
+                if (remaining == 0)
+                {
+                    break;
+                }
+            }
+            Node node = graphDb.getNodeById(n);
+            for (Relationship rel : node.getRelationships(direction))
+            {
+                long m = rel.getOtherNode(node).getId();
+                if (!visited.containsKey(m))
+                {
+                    visited.put(m, 1);
+                    queue = append(queue, tail++, m);
+                }
+            }
+        }
+
+        long[] reached = new long[targets.length];
+        int count = 0;
+        for (int i = 0; i < targets.length; i++)
+        {
+            // Duplicated targets share the index of their last occurrence
+            if (found[targetIndex.get(targets[i], -1)])
+            {
+                reached[count++] = targets[i];
+            }
+        }
+        return Arrays.copyOf(reached, count);
+    }
+
+    private static long[] append(long[] queue, int position, long node)
+    {
+        if (position == queue.length)
+        {
+            queue = Arrays.copyOf(queue, queue.length << 1);
+        }
+        queue[position] = node;
+        return queue;
+    }
+}
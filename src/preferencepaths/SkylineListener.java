@@ -0,0 +1,22 @@
+package preferencepaths;
+
+/**
+ * Receives skyline changes while a preference path query runs, so callers can
+ * consume results before the search finishes. Insertions and evictions are
+ * published as they happen; a path that is evicted was published as added first.
+ * Each query of a batch has its own listener, called on the thread that runs
+ * that query.
+ */
+public interface SkylineListener
+{
+    /**
+     * Called when a path enters the skyline. Returning false stops the search,
+     * which then returns the skyline as it stands.
+     */
+    boolean pathAdded(SkylinePath path);
+
+    /**
+     * Called when a path is evicted from the skyline by a dominating one.
+     */
+    void pathRemoved(SkylinePath path);
+}
@@ -0,0 +1,52 @@
+package preferencepaths;
+
+/**
+ * A path of the preference path skyline. Nodes and relationships are kept as ids
+ * so a path does not hold on to the transaction it was found in. The length and
+ * reward include the virtual edges from the super-source and to the super-sink.
+ */
+public class SkylinePath
+{
+    private final long[] nodes;
+    private final long[] relationships;
+    private final int length;
+    private final int reward;
+
+    public SkylinePath(long[] nodes, long[] relationships, int length, int reward)
+    {
+        this.nodes = nodes;
+        this.relationships = relationships;
+        this.length = length;
+        this.reward = reward;
+    }
+
+    public long[] getNodes()
+    {
+        return nodes;
+    }
+
+    public long[] getRelationships()
+    {
+        return relationships;
+    }
+
+    public long getStartNode()
+    {
+        return nodes[0];
+    }
+
+    public long getEndNode()
+    {
+        return nodes[nodes.length - 1];
+    }
+
+    public int getLength()
+    {
+        return length;
+    }
+
+    public int getReward()
+    {
+        return reward;
+    }
+}
@@ -0,0 +1,280 @@
+package preferencepaths;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+
+
+/**
+ * Writes a synthetic social network in the shape the example queries assume,
+ * with the batch inserter. Persons live in cities that are part of countries,
+ * know other persons, mostly from their own country, create posts and comments
+ * and like posts. Country sizes, friend counts, post counts, replies and likes
+ * follow skewed distributions in the spirit of the LDBC social network, so a few
+ * hubs gather most of the edges.
+ *
+ * The output depends only on the scale factor and the seed: scale 1 has 10000
+ * persons and the other counts grow linearly with it, while the places stay
+ * the same. The target directory must not hold a database yet.
+ *
+ * Usage: SocialGraphGenerator <store dir> <scale factor> [seed]
+ */
+public class SocialGraphGenerator
+{
+    private static final int PERSONS_PER_SCALE = 10000;
+    private static final int CITIES_PER_COUNTRY = 8;
+    private static final long DEFAULT_SEED = 42;
+
+    // Most populated first; persons are spread over them by rank
+    private static final String[] COUNTRIES = {
+        "China", "India", "United_States", "Indonesia", "Brazil", "Pakistan", "Nigeria",
+        "Bangladesh", "Russia", "Japan", "Mexico", "Philippines", "Vietnam", "Germany",
+        "France", "United_Kingdom", "Italy", "Spain", "Canada", "Australia"
+    };
+
+    // Share of friends picked from the person's own country
+    private static final double LOCAL_FRIENDS = 0.7;
+    // Exponent skewing picks towards the lowest ranks, which act as hubs
+    private static final double POPULARITY_SKEW = 3.0;
+
+    private static final int MIN_KNOWS = 3;
+    private static final int MAX_KNOWS = 1000;
+    private static final double KNOWS_EXPONENT = 2.2;
+    private static final int MAX_POSTS = 200;
+    private static final double POSTS_EXPONENT = 2.0;
+    private static final int MAX_REPLIES = 100;
+    private static final double REPLIES_EXPONENT = 2.5;
+    private static final int MAX_LIKES = 300;
+    private static final double LIKES_EXPONENT = 2.0;
+
+    private static final Label PERSON = DynamicLabel.label("Person");
+    private static final Label PLACE = DynamicLabel.label("Place");
+    private static final Label POST = DynamicLabel.label("Post");
+    private static final Label COMMENT = DynamicLabel.label("Comment");
+    private static final RelationshipType IS_LOCATED_IN = DynamicRelationshipType.withName("IsLocatedIn");
+    private static final RelationshipType IS_PART_OF = DynamicRelationshipType.withName("IsPartOf");
+    private static final RelationshipType KNOWS = DynamicRelationshipType.withName("Knows");
+    private static final RelationshipType HAS_CREATOR = DynamicRelationshipType.withName("HasCreator");
+    private static final RelationshipType REPLY_OF = DynamicRelationshipType.withName("ReplyOf");
+    private static final RelationshipType LIKES = DynamicRelationshipType.withName("Likes");
+
+    private static final Map<String, Object> NO_PROPERTIES = Collections.<String, Object>emptyMap();
+
+    private final BatchInserter inserter;
+    private final Random random;
+    private final int persons;
+
+    private long[] personIds;
+    private int[] personCountry;
+    private int[][] countryPersons;
+    private int[][] friends;
+    private long[] postIds;
+    private int[] postAuthors;
+    private int postCount;
+    private long nextId;
+
+    public SocialGraphGenerator(BatchInserter inserter, int scale, long seed)
+    {
+        this.inserter = inserter;
+        this.random = new Random(seed);
+        this.persons = PERSONS_PER_SCALE * scale;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: SocialGraphGenerator <store dir> <scale factor> [seed]");
+            System.exit(1);
+        }
+        int scale = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+
+        long startTime = System.nanoTime();
+        BatchInserter inserter = BatchInserters.inserter(new File(args[0]));
+        try
+        {
+            new SocialGraphGenerator(inserter, scale, seed).generate();
+        }
+        finally
+        {
+            inserter.shutdown();
+        }
+        System.out.println("Generated scale " + scale + " into " + args[0] + " in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+    }
+
+    public void generate()
+    {
+        long[][] cities = createPlaces();
+        createPersons(cities);
+        createKnows();
+        createPosts();
+        createComments();
+        createLikes();
+        inserter.createDeferredSchemaIndex(PLACE).on("name").create();
+    }
+
+    private long[][] createPlaces()
+    {
+        long[][] cities = new long[COUNTRIES.length][CITIES_PER_COUNTRY];
+        for (int c = 0; c < COUNTRIES.length; c++)
+        {
+            long country = inserter.createNode(properties("name", COUNTRIES[c]), PLACE);
+            for (int i = 0; i < CITIES_PER_COUNTRY; i++)
+            {
+                cities[c][i] = inserter.createNode(properties("name", COUNTRIES[c] + "_City_" + i), PLACE);
+                inserter.createRelationship(cities[c][i], country, IS_PART_OF, NO_PROPERTIES);
+            }
+        }
+        return cities;
+    }
+
+    private void createPersons(long[][] cities)
+    {
+        personIds = new long[persons];
+        personCountry = new int[persons];
+        int[] countrySizes = new int[COUNTRIES.length];
+        for (int p = 0; p < persons; p++)
+        {
+            int country = skewed(COUNTRIES.length);
+            personCountry[p] = country;
+            countrySizes[country]++;
+            personIds[p] = inserter.createNode(properties("id", nextId++), PERSON);
+            inserter.createRelationship(personIds[p], cities[country][random.nextInt(CITIES_PER_COUNTRY)], IS_LOCATED_IN, NO_PROPERTIES);
+        }
+
+        countryPersons = new int[COUNTRIES.length][];
+        for (int c = 0; c < COUNTRIES.length; c++)
+        {
+            countryPersons[c] = new int[countrySizes[c]];
+            countrySizes[c] = 0;
+        }
+        for (int p = 0; p < persons; p++)
+        {
+            int country = personCountry[p];
+            countryPersons[country][countrySizes[country]++] = p;
+        }
+    }
+
+    private void createKnows()
+    {
+        friends = new int[persons][];
+        HashSet<Integer> known = new HashSet<Integer>();
+        for (int p = 0; p < persons; p++)
+        {
+            int degree = powerLaw(MIN_KNOWS, Math.min(MAX_KNOWS, persons - 1), KNOWS_EXPONENT);
+            int[] local = countryPersons[personCountry[p]];
+            int[] chosen = new int[degree];
+            int count = 0;
+            known.clear();
+            // Bounded attempts, as small countries may run out of new friends
+            for (int attempt = 0; count < degree && attempt < 4 * degree; attempt++)
+            {
+                int friend = random.nextDouble() < LOCAL_FRIENDS ? local[skewed(local.length)] : skewed(persons);
+                if (friend == p || !known.add(friend))
+                {
+                    continue;
+                }
+                chosen[count++] = friend;
+                inserter.createRelationship(personIds[p], personIds[friend], KNOWS, NO_PROPERTIES);
+            }
+            friends[p] = Arrays.copyOf(chosen, count);
+        }
+    }
+
+    private void createPosts()
+    {
+        postIds = new long[persons];
+        postAuthors = new int[persons];
+        for (int p = 0; p < persons; p++)
+        {
+            int posts = powerLaw(1, MAX_POSTS + 1, POSTS_EXPONENT) - 1;
+            for (int i = 0; i < posts; i++)
+            {
+                long post = inserter.createNode(properties("id", nextId++), POST);
+                inserter.createRelationship(post, personIds[p], HAS_CREATOR, NO_PROPERTIES);
+                if (postCount == postIds.length)
+                {
+                    postIds = Arrays.copyOf(postIds, postCount << 1);
+                    postAuthors = Arrays.copyOf(postAuthors, postCount << 1);
+                }
+                postIds[postCount] = post;
+                postAuthors[postCount++] = p;
+            }
+        }
+    }
+
+    /**
+     * Replies mostly come from friends of the author.
+     */
+    private void createComments()
+    {
+        for (int i = 0; i < postCount; i++)
+        {
+            int replies = powerLaw(1, MAX_REPLIES + 1, REPLIES_EXPONENT) - 1;
+            int[] authorFriends = friends[postAuthors[i]];
+            for (int r = 0; r < replies; r++)
+            {
+                int commenter = authorFriends.length > 0 ? authorFriends[random.nextInt(authorFriends.length)] : random.nextInt(persons);
+                long comment = inserter.createNode(properties("id", nextId++), COMMENT);
+                inserter.createRelationship(comment, postIds[i], REPLY_OF, NO_PROPERTIES);
+                inserter.createRelationship(comment, personIds[commenter], HAS_CREATOR, NO_PROPERTIES);
+            }
+        }
+    }
+
+    private void createLikes()
+    {
+        if (postCount == 0)
+        {
+            return;
+        }
+        HashSet<Long> liked = new HashSet<Long>();
+        for (int p = 0; p < persons; p++)
+        {
+            int likes = powerLaw(1, MAX_LIKES + 1, LIKES_EXPONENT) - 1;
+            liked.clear();
+            for (int i = 0; i < likes; i++)
+            {
+                long post = postIds[skewed(postCount)];
+                if (liked.add(post))
+                {
+                    inserter.createRelationship(personIds[p], post, LIKES, NO_PROPERTIES);
+                }
+            }
+        }
+    }
+
+    /**
+     * Index in [0, n), lower indexes more likely.
+     */
+    private int skewed(int n)
+    {
+        return (int) (n * Math.pow(random.nextDouble(), POPULARITY_SKEW));
+    }
+
+    /**
+     * Discrete power law sample in [min, max].
+     */
+    private int powerLaw(int min, int max, double exponent)
+    {
+        double x = min * Math.pow(1 - random.nextDouble(), -1 / (exponent - 1));
+        return (int) Math.min(max, Math.floor(x));
+    }
+
+    private static Map<String, Object> properties(String key, Object value)
+    {
+        return Collections.singletonMap(key, value);
+    }
+}
@@ -0,0 +1,14 @@
+package preferencepaths;
+
+/**
+ * Why a preference path search ended. Anything but COMPLETED means the skyline
+ * it returned is the best found so far, not necessarily the full one.
+ */
+public enum StopReason
+{
+    COMPLETED,
+    TIMED_OUT,
+    BUDGET_EXHAUSTED,
+    CANCELLED,
+    STOPPED_BY_LISTENER
+}
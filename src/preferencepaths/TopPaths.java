@@ -0,0 +1,87 @@
+package preferencepaths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+
+/**
+ * The k best scoring paths found so far. They are kept in a min-heap on score,
+ * so the k-th best, which a candidate has to beat once the heap is full, is at
+ * its root.
+ */
+public class TopPaths
+{
+    private final int k;
+    private final PathScorer scorer;
+    private final PriorityQueue<SkylinePath> heap;
+    private final Comparator<SkylinePath> order;
+
+    public TopPaths(int k, final PathScorer scorer)
+    {
+        this.k = k;
+        this.scorer = scorer;
+        // Worst first: lowest score, then longest
+        this.order = new Comparator<SkylinePath>()
+        {
+            @Override
+            public int compare(SkylinePath a, SkylinePath b)
+            {
+                int c = Double.compare(scorer.score(a.getLength(), a.getReward()), scorer.score(b.getLength(), b.getReward()));
+                return c != 0 ? c : Integer.compare(b.getLength(), a.getLength());
+            }
+        };
+        this.heap = new PriorityQueue<SkylinePath>(Math.min(k, 64) + 1, order);
+    }
+
+    public double score(int length, int reward)
+    {
+        return scorer.score(length, reward);
+    }
+
+    /**
+     * Returns true if a path of at most the given score could still enter the
+     * results: there are fewer than k, or it scores at least as well as the k-th
+     * best, which a shorter path of the same score replaces.
+     */
+    public boolean admits(double score)
+    {
+        return heap.size() < k || score >= scorer.score(heap.peek().getLength(), heap.peek().getReward());
+    }
+
+    /**
+     * Keeps the path if it is among the k best so far and not already kept.
+     */
+    public boolean offer(SkylinePath path)
+    {
+        if (heap.size() == k && order.compare(path, heap.peek()) <= 0)
+        {
+            return false;
+        }
+        for (SkylinePath kept : heap)
+        {
+            if (Arrays.equals(kept.getRelationships(), path.getRelationships()) && kept.getStartNode() == path.getStartNode())
+            {
+                return false;
+            }
+        }
+        heap.add(path);
+        if (heap.size() > k)
+        {
+            heap.poll();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the kept paths, best first.
+     */
+    public ArrayList<SkylinePath> values()
+    {
+        ArrayList<SkylinePath> paths = new ArrayList<SkylinePath>(heap);
+        Collections.sort(paths, Collections.reverseOrder(order));
+        return paths;
+    }
+}
@@ -0,0 +1,50 @@
+package preferencepaths;
+
+/**
+ * Scores a path as its weighted reward minus its weighted length. Both weights
+ * must be non negative.
+ */
+public class WeightedScore implements PathScorer
+{
+    private final double lengthWeight;
+    private final double rewardWeight;
+
+    public WeightedScore(double lengthWeight, double rewardWeight)
+    {
+        if (lengthWeight < 0 || rewardWeight < 0)
+        {
+            throw new IllegalArgumentException("Negative weight: " + lengthWeight + ", " + rewardWeight);
+        }
+        this.lengthWeight = lengthWeight;
+        this.rewardWeight = rewardWeight;
+    }
+
+    @Override
+    public double score(int length, int reward)
+    {
+        return rewardWeight * reward - lengthWeight * length;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof WeightedScore))
+        {
+            return false;
+        }
+        WeightedScore other = (WeightedScore) o;
+        return Double.compare(lengthWeight, other.lengthWeight) == 0 && Double.compare(rewardWeight, other.rewardWeight) == 0;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * Double.valueOf(lengthWeight).hashCode() + Double.valueOf(rewardWeight).hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return rewardWeight + " * reward - " + lengthWeight + " * length";
+    }
+}
@@ -0,0 +1,228 @@
+package preferencepaths;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.io.fs.FileUtils;
+
+
+public class GraphSnapshotTest
+{
+    private static final String QUERY = "MATCH (n:Person) RETURN id(n) AS id ORDER BY id";
+    private static final String[] TYPES = {"KNOWS", "LIKES", "FOLLOWS"};
+
+    private static File dir;
+    private static GraphDatabaseService graphDb;
+    private static long[] nodeIds;
+    private static RewardTable rewards;
+
+    @BeforeClass
+    public static void createDatabase() throws IOException
+    {
+        dir = Files.createTempDirectory("snapshot").toFile();
+        graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(new File(dir, "graph.db"));
+        Random random = new Random(42);
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            // Deleted nodes leave gaps in the ids, and the last nodes keep no edges
+            ArrayList<Node> nodes = new ArrayList<Node>();
+            for (int i = 0; i < 120; i++)
+            {
+                Node n = graphDb.createNode();
+                if (i % 7 == 0)
+                {
+                    n.delete();
+                    continue;
+                }
+                if (i % 3 != 0)
+                {
+                    n.addLabel(DynamicLabel.label(i % 2 == 0 ? "Person" : "Page"));
+                }
+                nodes.add(n);
+            }
+            for (int e = 0; e < 500; e++)
+            {
+                Node a = nodes.get(random.nextInt(nodes.size() - 10));
+                Node b = nodes.get(random.nextInt(nodes.size() - 10));
+                a.createRelationshipTo(b, DynamicRelationshipType.withName(TYPES[random.nextInt(TYPES.length)]));
+            }
+            nodeIds = new long[nodes.size()];
+            for (int i = 0; i < nodeIds.length; i++)
+            {
+                nodeIds[i] = nodes.get(i).getId();
+            }
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+
+        rewards = new RewardTable(-1000000, 16);
+        rewards.put("LIKES", 2);
+        rewards.put("FOLLOWS", -3);
+        for (int i = 0; i < nodeIds.length; i += 5)
+        {
+            rewards.put(Long.toString(nodeIds[i]), 4);
+        }
+    }
+
+    @AfterClass
+    public static void deleteDatabase() throws IOException
+    {
+        graphDb.shutdown();
+        FileUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void loadedSnapshotMatchesStore()
+    {
+        GraphSnapshot snapshot = GraphSnapshot.load(graphDb, Collections.singletonList(QUERY));
+        assertMatchesStore(snapshot);
+    }
+
+    @Test
+    public void mappedSnapshotMatchesStore() throws IOException
+    {
+        File file = new File(dir, "snapshot.bin");
+        GraphSnapshot.load(graphDb, Collections.singletonList(QUERY)).write(file);
+        assertMatchesStore(GraphSnapshot.map(file));
+    }
+
+    @Test(expected = IOException.class)
+    public void mapRejectsOtherFiles() throws IOException
+    {
+        File file = new File(dir, "other.bin");
+        Files.write(file.toPath(), new byte[64]);
+        GraphSnapshot.map(file);
+    }
+
+    private static void assertMatchesStore(GraphSnapshot snapshot)
+    {
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            SearchGraph store = new Neo4jSearchGraph(graphDb, rewards);
+            SearchGraph view = snapshot.view(rewards);
+            assertEquals(nodeIds.length, snapshot.nodeCount());
+            assertEquals(500, snapshot.edgeCount());
+            long[] sorted = nodeIds.clone();
+            Arrays.sort(sorted);
+            for (int i = 0; i < sorted.length; i++)
+            {
+                assertEquals(sorted[i], snapshot.nodeIdAt(i));
+            }
+
+            // The virtual ends expand to nothing
+            long[] nodes = Arrays.copyOf(nodeIds, nodeIds.length + 2);
+            nodes[nodeIds.length] = -1;
+            nodes[nodeIds.length + 1] = -2;
+            for (boolean incoming : new boolean[] {true, false})
+            {
+                Expansion[] expected = expansions(nodes.length);
+                Expansion[] actual = expansions(nodes.length);
+                if (incoming)
+                {
+                    store.expandIncoming(nodes, 0, nodes.length, expected);
+                    view.expandIncoming(nodes, 0, nodes.length, actual);
+                }
+                else
+                {
+                    store.expandOutgoing(nodes, 0, nodes.length, expected);
+                    view.expandOutgoing(nodes, 0, nodes.length, actual);
+                }
+                for (int i = 0; i < nodes.length; i++)
+                {
+                    assertEquals("node " + nodes[i], entries(store, expected[i]), entries(view, actual[i]));
+                }
+            }
+
+            // Ids the snapshot does not hold expand to nothing too
+            Expansion[] absent = expansions(1);
+            view.expandIncoming(new long[] {sorted[sorted.length - 1] + 1000}, 0, 1, absent);
+            assertEquals(0, absent[0].size());
+
+            for (long id : nodeIds)
+            {
+                Node n = graphDb.getNodeById(id);
+                String label = n.getLabels().iterator().hasNext() ? n.getLabels().iterator().next().name() : null;
+                assertEquals(label, snapshot.getLabel(id));
+                for (Relationship r : n.getRelationships(Direction.INCOMING))
+                {
+                    assertEquals(r.getType().name(), snapshot.getRelationshipType(id, r.getId()));
+                }
+            }
+            assertNull(snapshot.getRelationshipType(nodeIds[0], -5));
+            assertNull(snapshot.getQueryResult("MATCH (n) RETURN n"));
+            assertArrayEquals(queryResult(), snapshot.getQueryResult(QUERY));
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+
+    private static Expansion[] expansions(int count)
+    {
+        Expansion[] expansions = new Expansion[count];
+        for (int i = 0; i < count; i++)
+        {
+            expansions[i] = new Expansion();
+        }
+        return expansions;
+    }
+
+    /**
+     * The entries of an expansion as sorted strings of neighbour, relationship
+     * id and cost, with the end nodes and cost read back from the edge handle.
+     */
+    private static String entries(SearchGraph graph, Expansion expansion)
+    {
+        ArrayList<String> entries = new ArrayList<String>();
+        for (int i = 0; i < expansion.size(); i++)
+        {
+            long edge = expansion.edge(i);
+            entries.add(expansion.node(i) + " " + graph.relationshipId(edge) + " " + expansion.cost(i) + " " + graph.startNode(edge) + "->" + graph.endNode(edge)
+                    + " " + graph.cost(edge));
+        }
+        Collections.sort(entries);
+        return entries.toString();
+    }
+
+    private static String[] queryResult()
+    {
+        long[] sorted = nodeIds.clone();
+        Arrays.sort(sorted);
+        ArrayList<String> ids = new ArrayList<String>();
+        for (long id : sorted)
+        {
+            if (graphDb.getNodeById(id).hasLabel(DynamicLabel.label("Person")))
+            {
+                ids.add(Long.toString(id));
+            }
+        }
+        return ids.toArray(new String[ids.size()]);
+    }
+}
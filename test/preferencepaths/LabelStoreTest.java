@@ -0,0 +1,61 @@
+package preferencepaths;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+
+public class LabelStoreTest
+{
+    @Test
+    public void unwrittenNodesKeepInitialBounds()
+    {
+        LabelStore labels = new LabelStore(4, Integer.MAX_VALUE, -1);
+        assertEquals(-1, labels.slot(10));
+        assertEquals(Integer.MAX_VALUE, labels.lowerBound(10));
+        assertEquals(-1, labels.upperBound(10));
+        assertEquals(LabelStore.NO_RELATIONSHIP, labels.successor(10, false));
+        assertEquals(0, labels.size());
+    }
+
+    @Test
+    public void insertReturnsSameSlotForSameNode()
+    {
+        LabelStore labels = new LabelStore(4, Integer.MAX_VALUE, -1);
+        int slot = labels.insert(-2);
+        assertEquals(slot, labels.insert(-2));
+        assertEquals(slot, labels.slot(-2));
+        assertEquals(-2, labels.node(slot));
+        assertEquals(1, labels.size());
+        assertEquals(Integer.MAX_VALUE, labels.lowerBoundAt(slot));
+        assertEquals(-1, labels.upperBoundAt(slot));
+        assertEquals(0, labels.upperHopsAt(slot));
+    }
+
+    @Test
+    public void labelsSurviveGrowth()
+    {
+        // Starts at the 16 slot minimum and doubles several times
+        LabelStore labels = new LabelStore(1, Integer.MAX_VALUE, -1);
+        int count = 5000;
+        for (long node = 0; node < count; node++)
+        {
+            int slot = labels.insert(node * 7919);
+            labels.setLowerBound(slot, (int) node, node + 1);
+            labels.setUpperBound(slot, (int) node * 2, node + 2, (int) node % 13);
+        }
+        assertEquals(count, labels.size());
+        for (long node = 0; node < count; node++)
+        {
+            int slot = labels.slot(node * 7919);
+            assertEquals(node, slot);
+            assertEquals(node * 7919, labels.node(slot));
+            assertEquals(node, labels.lowerBound(node * 7919));
+            assertEquals(node * 2, labels.upperBound(node * 7919));
+            assertEquals(node + 1, labels.successor(node * 7919, false));
+            assertEquals(node + 2, labels.successor(node * 7919, true));
+            assertEquals(node % 13, labels.upperHopsAt(slot));
+        }
+        assertEquals(-1, labels.slot(1));
+    }
+}
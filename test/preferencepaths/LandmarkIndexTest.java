@@ -0,0 +1,247 @@
+package preferencepaths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.io.fs.FileUtils;
+
+
+public class LandmarkIndexTest
+{
+    private static final String[] TYPES = {"KNOWS", "LIKES", "FOLLOWS"};
+    private static final long[] SEEDS = {7, 11, 42, 1234};
+
+    private static File dir;
+    private static GraphDatabaseService graphDb;
+    private static long[] nodeIds;
+    private static int upstream;
+    private static RewardTable rewards;
+    private static GraphSnapshot snapshot;
+    private static LandmarkIndex landmarks;
+
+    @BeforeClass
+    public static void createDatabase() throws IOException
+    {
+        dir = Files.createTempDirectory("landmarks").toFile();
+        graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(new File(dir, "graph.db"));
+        Random random = new Random(42);
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            // A sparse graph, so that some pairs are far apart or not joined at all,
+            // and a few nodes without edges. Edges between the upstream nodes and
+            // the denser rest only lead downstream.
+            ArrayList<Node> nodes = new ArrayList<Node>();
+            for (int i = 0; i < 160; i++)
+            {
+                Node n = graphDb.createNode();
+                if (i % 9 == 0)
+                {
+                    n.delete();
+                    continue;
+                }
+                nodes.add(n);
+            }
+            upstream = 50;
+            int downstream = nodes.size() - 6 - upstream;
+            for (int e = 0; e < 320; e++)
+            {
+                Node a;
+                Node b;
+                if (e % 5 == 0)
+                {
+                    a = nodes.get(random.nextInt(upstream));
+                    b = nodes.get(e % 10 == 0 ? random.nextInt(upstream) : upstream + random.nextInt(downstream));
+                }
+                else
+                {
+                    a = nodes.get(upstream + random.nextInt(downstream));
+                    b = nodes.get(upstream + random.nextInt(downstream));
+                }
+                a.createRelationshipTo(b, DynamicRelationshipType.withName(TYPES[random.nextInt(TYPES.length)]));
+            }
+            nodeIds = new long[nodes.size()];
+            for (int i = 0; i < nodeIds.length; i++)
+            {
+                nodeIds[i] = nodes.get(i).getId();
+            }
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+
+        rewards = new RewardTable(-1000000, 16);
+        rewards.put("LIKES", 2);
+        for (int i = 0; i < nodeIds.length; i += 4)
+        {
+            rewards.put(Long.toString(nodeIds[i]), 3);
+        }
+        snapshot = GraphSnapshot.load(graphDb, new ArrayList<String>());
+        landmarks = LandmarkIndex.build(snapshot, 4);
+    }
+
+    @AfterClass
+    public static void deleteDatabase() throws IOException
+    {
+        graphDb.shutdown();
+        FileUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void hopBoundsNeverOverestimate()
+    {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++)
+        {
+            long[] set = pick(random, 1 + round % 5);
+            for (boolean fromSet : new boolean[] {true, false})
+            {
+                HopBounds bounds = new HopBounds(landmarks, set, fromSet);
+                HashMap<Long, Integer> distances = hopDistances(set, fromSet);
+                for (long m : nodeIds)
+                {
+                    int bound = bounds.hops(m);
+                    Integer distance = distances.get(m);
+                    if (distance == null)
+                    {
+                        continue;
+                    }
+                    assertTrue("set " + Arrays.toString(set) + " node " + m + " bound " + bound + " hops " + distance, bound <= distance);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void guidedSearchKeepsSkyline()
+    {
+        // Start nodes downstream cannot reach the upstream nodes, which the index
+        // shows for most of them
+        for (long seed : SEEDS)
+        {
+            for (QueryOptions.Frontier frontier : new QueryOptions.Frontier[] {QueryOptions.Frontier.LOWER_BOUND, QueryOptions.Frontier.BOUND_SPREAD})
+            {
+                Random random = new Random(seed);
+                long[] startNodes = new long[4];
+                for (int i = 0; i < startNodes.length; i++)
+                {
+                    startNodes[i] = nodeIds[upstream + random.nextInt(nodeIds.length - upstream)];
+                }
+                long[] endNodes = pick(random, 10);
+                QueryOptions options = PreferenceSearchTest.options();
+                String plain = PreferenceSearchTest.skyline(search(options, null, frontier, startNodes, endNodes));
+                String guided = PreferenceSearchTest.skyline(search(options, landmarks, frontier, startNodes, endNodes));
+                assertEquals("seed " + seed + " " + frontier, plain, guided);
+            }
+        }
+    }
+
+    @Test
+    public void mappedIndexMatchesBuiltOne() throws IOException
+    {
+        File file = new File(dir, "index.landmarks");
+        landmarks.write(file);
+        LandmarkIndex mapped = LandmarkIndex.map(file, snapshot.nodeCount(), snapshot.edgeCount());
+        assertEquals(landmarks.nodeCount(), mapped.nodeCount());
+        assertEquals(landmarks.landmarkCount(), mapped.landmarkCount());
+        assertEquals(snapshot.edgeCount(), mapped.edgeCount());
+        for (long id : nodeIds)
+        {
+            int i = landmarks.index(id);
+            assertEquals(i, mapped.index(id));
+            for (int l = 0; l < landmarks.landmarkCount(); l++)
+            {
+                assertEquals(landmarks.distance(l, i, true), mapped.distance(l, i, true));
+                assertEquals(landmarks.distance(l, i, false), mapped.distance(l, i, false));
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void mapRejectsStaleIndex() throws IOException
+    {
+        File file = new File(dir, "stale.landmarks");
+        landmarks.write(file);
+        LandmarkIndex.map(file, snapshot.nodeCount(), snapshot.edgeCount() + 1);
+    }
+
+    private static ArrayList<SkylinePath> search(QueryOptions options, LandmarkIndex index, QueryOptions.Frontier frontier, long[] startNodes, long[] endNodes)
+    {
+        PreferenceSearch search = new PreferenceSearch(snapshot.view(rewards), rewards, options, index, frontier);
+        ArrayList<SkylinePath> paths = search.run(startNodes, endNodes);
+        assertEquals(StopReason.COMPLETED, search.getStopReason());
+        return paths;
+    }
+
+    private static long[] pick(Random random, int count)
+    {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++)
+        {
+            ids[i] = nodeIds[random.nextInt(nodeIds.length)];
+        }
+        return ids;
+    }
+
+    /**
+     * Hops from the set to every node it reaches, or from every node that
+     * reaches the set, by a breadth-first search over the store.
+     */
+    private static HashMap<Long, Integer> hopDistances(long[] set, boolean fromSet)
+    {
+        HashMap<Long, Integer> distances = new HashMap<Long, Integer>();
+        ArrayDeque<Long> queue = new ArrayDeque<Long>();
+        for (long n : set)
+        {
+            if (!distances.containsKey(n))
+            {
+                distances.put(n, 0);
+                queue.add(n);
+            }
+        }
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            while (!queue.isEmpty())
+            {
+                long n = queue.poll();
+                for (Relationship r : graphDb.getNodeById(n).getRelationships(fromSet ? Direction.OUTGOING : Direction.INCOMING))
+                {
+                    long m = r.getOtherNode(graphDb.getNodeById(n)).getId();
+                    if (!distances.containsKey(m))
+                    {
+                        distances.put(m, distances.get(n) + 1);
+                        queue.add(m);
+                    }
+                }
+            }
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,86 @@
+package preferencepaths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class LongIntMapTest
+{
+    @Test
+    public void growsFromSmallestTableAndKeepsEveryKey()
+    {
+        // Random keys over a small range collide and probe on every table size
+        Random random = new Random(42);
+        LongIntMap map = new LongIntMap(1);
+        HashMap<Long, Integer> expected = new HashMap<Long, Integer>();
+        for (int i = 0; i < 20000; i++)
+        {
+            long key = random.nextInt(30000) - 5;
+            map.put(key, i);
+            expected.put(key, i);
+            assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<Long, Integer> e : expected.entrySet())
+        {
+            assertTrue(map.containsKey(e.getKey()));
+            assertEquals("key " + e.getKey(), e.getValue().intValue(), map.get(e.getKey(), -1));
+        }
+        for (long key = -5; key < 30000; key++)
+        {
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+    }
+
+    @Test
+    public void missingKeysReturnDefault()
+    {
+        LongIntMap map = new LongIntMap(4);
+        map.put(-1, 1);
+        map.put(-2, 2);
+        map.put(0, 3);
+        assertEquals(1, map.get(-1, 7));
+        assertEquals(2, map.get(-2, 7));
+        assertEquals(3, map.get(0, 7));
+        assertEquals(7, map.get(1, 7));
+        assertEquals(7, map.get(Long.MAX_VALUE, 7));
+        assertFalse(map.containsKey(-3));
+    }
+
+    @Test
+    public void putOverwritesWithoutGrowing()
+    {
+        LongIntMap map = new LongIntMap(2);
+        for (int i = 0; i < 100; i++)
+        {
+            map.put(5, i);
+        }
+        assertEquals(1, map.size());
+        assertEquals(99, map.get(5, -1));
+    }
+
+    @Test
+    public void clearForgetsEveryKey()
+    {
+        LongIntMap map = new LongIntMap(2);
+        for (long key = 0; key < 1000; key++)
+        {
+            map.put(key, (int) key);
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        for (long key = 0; key < 1000; key++)
+        {
+            assertFalse(map.containsKey(key));
+        }
+        map.put(3, 4);
+        assertEquals(4, map.get(3, -1));
+        assertEquals(1, map.size());
+    }
+}
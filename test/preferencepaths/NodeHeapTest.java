@@ -0,0 +1,89 @@
+package preferencepaths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class NodeHeapTest
+{
+    @Test
+    public void pollsInKeyOrderAfterDecreaseAndIncreaseKey()
+    {
+        Random random = new Random(7);
+        LabelStore labels = new LabelStore(16, Integer.MAX_VALUE, 0);
+        NodeHeap heap = new NodeHeap(labels, false, 1);
+        int count = 2000;
+        for (long node = 0; node < count; node++)
+        {
+            int slot = labels.insert(node);
+            labels.setLowerBound(slot, 1000 + random.nextInt(1000), LabelStore.NO_RELATIONSHIP);
+            heap.update(slot);
+        }
+        // Mostly decrease-key, as the search does, with some increases
+        for (int i = 0; i < 5000; i++)
+        {
+            int slot = random.nextInt(count);
+            int bound = labels.lowerBoundAt(slot) + (random.nextInt(4) == 0 ? random.nextInt(50) : -random.nextInt(50));
+            labels.setLowerBound(slot, bound, LabelStore.NO_RELATIONSHIP);
+            heap.update(slot);
+            assertTrue(heap.contains(slot));
+        }
+        assertEquals(count, heap.size());
+        assertPollOrder(labels, heap, false, count);
+    }
+
+    @Test
+    public void equalKeysPollByNodeId()
+    {
+        LabelStore labels = new LabelStore(16, 5, 0);
+        NodeHeap heap = new NodeHeap(labels, false, 16);
+        for (long node = 100; node >= -2; node--)
+        {
+            heap.update(labels.insert(node));
+        }
+        for (long node = -2; node <= 100; node++)
+        {
+            assertEquals(node, labels.node(heap.poll()));
+        }
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void boundSpreadSubtractsUpperBound()
+    {
+        Random random = new Random(11);
+        LabelStore labels = new LabelStore(16, Integer.MAX_VALUE, 0);
+        NodeHeap heap = new NodeHeap(labels, true, 16);
+        int count = 500;
+        for (long node = 0; node < count; node++)
+        {
+            int slot = labels.insert(node);
+            labels.setLowerBound(slot, random.nextInt(100), LabelStore.NO_RELATIONSHIP);
+            labels.setUpperBound(slot, random.nextInt(100), LabelStore.NO_RELATIONSHIP, 1);
+            heap.update(slot);
+        }
+        assertPollOrder(labels, heap, true, count);
+    }
+
+    private static void assertPollOrder(LabelStore labels, NodeHeap heap, boolean boundSpread, int count)
+    {
+        long lastKey = Long.MIN_VALUE;
+        long lastNode = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++)
+        {
+            int slot = heap.poll();
+            assertFalse(heap.contains(slot));
+            long key = labels.lowerBoundAt(slot) - (boundSpread ? labels.upperBoundAt(slot) : 0);
+            long node = labels.node(slot);
+            assertTrue("poll " + i, key > lastKey || (key == lastKey && node > lastNode));
+            lastKey = key;
+            lastNode = node;
+        }
+        assertTrue(heap.isEmpty());
+    }
+}
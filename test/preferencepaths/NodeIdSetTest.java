@@ -0,0 +1,117 @@
+package preferencepaths;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class NodeIdSetTest
+{
+    @Test
+    public void containsExactlyTheGivenIds()
+    {
+        // Chunk 0 is dense enough for a bitmap, the others stay sorted arrays
+        Random random = new Random(42);
+        long[] ids = new long[12000];
+        HashSet<Long> expected = new HashSet<Long>();
+        for (int i = 0; i < ids.length; i++)
+        {
+            ids[i] = i < 8000 ? random.nextInt(1 << 16) : random.nextInt(5 << 16) - 20;
+            if (ids[i] >= 0)
+            {
+                expected.add(ids[i]);
+            }
+        }
+        NodeIdSet set = NodeIdSet.of(ids, ids.length);
+        assertEquals(expected.size(), set.size());
+        for (long id = -30; id < (6 << 16); id++)
+        {
+            assertEquals("id " + id, expected.contains(id), set.contains(id));
+        }
+        assertFalse(set.contains(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void chunkTurnsIntoBitmapAtArrayLimit()
+    {
+        for (int count : new int[] {4095, 4096, 4097})
+        {
+            long[] ids = new long[count];
+            for (int i = 0; i < count; i++)
+            {
+                ids[i] = 3 * (count - i) + (1 << 16);
+            }
+            NodeIdSet set = NodeIdSet.of(ids, count);
+            assertEquals(count, set.size());
+            for (long id = 1 << 16; id < 3 * count + 3 + (1 << 16); id++)
+            {
+                long low = id - (1 << 16);
+                assertEquals(low > 0 && low % 3 == 0, set.contains(id));
+            }
+        }
+    }
+
+    @Test
+    public void onlyFirstCountIdsAreUsed()
+    {
+        NodeIdSet set = NodeIdSet.of(new long[] {9, 2, 2, -1, 5, 7}, 4);
+        assertEquals(2, set.size());
+        assertTrue(set.contains(2));
+        assertTrue(set.contains(9));
+        assertFalse(set.contains(5));
+        assertFalse(set.contains(-1));
+    }
+
+    @Test
+    public void emptySetHoldsNothing()
+    {
+        NodeIdSet set = NodeIdSet.of(new long[] {-2, -1}, 2);
+        assertEquals(0, set.size());
+        assertFalse(set.contains(0));
+        assertFalse(set.contains(-1));
+    }
+
+    @Test
+    public void equalSetsHaveEqualDigests() throws NoSuchAlgorithmException
+    {
+        Random random = new Random(7);
+        long[] ids = new long[6000];
+        for (int i = 0; i < ids.length; i++)
+        {
+            ids[i] = random.nextInt(3 << 16);
+        }
+        long[] shuffled = Arrays.copyOf(ids, ids.length + 2);
+        shuffled[ids.length] = ids[0];
+        shuffled[ids.length + 1] = -1;
+        for (int i = shuffled.length - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+            long t = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = t;
+        }
+        long[] other = ids.clone();
+        Arrays.sort(other);
+        other[other.length - 1]++;
+
+        byte[] digest = digest(NodeIdSet.of(ids, ids.length));
+        assertArrayEquals(digest, digest(NodeIdSet.of(shuffled, shuffled.length)));
+        assertFalse(Arrays.equals(digest, digest(NodeIdSet.of(other, other.length))));
+    }
+
+    private static byte[] digest(NodeIdSet set) throws NoSuchAlgorithmException
+    {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        set.update(digest);
+        return digest.digest();
+    }
+}
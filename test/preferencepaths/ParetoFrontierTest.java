@@ -0,0 +1,98 @@
+package preferencepaths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class ParetoFrontierTest
+{
+    @Test
+    public void weakDominanceIncludesEqualPoint()
+    {
+        ParetoFrontier<String> frontier = new ParetoFrontier<String>();
+        frontier.add(5, 3, "a", null);
+        assertTrue(frontier.dominates(5, 3));
+        assertTrue(frontier.dominates(6, 3));
+        assertTrue(frontier.dominates(5, 2));
+        assertFalse(frontier.dominates(4, 3));
+        assertFalse(frontier.dominates(5, 4));
+    }
+
+    @Test
+    public void strictDominanceExcludesEqualPoint()
+    {
+        ParetoFrontier<String> frontier = new ParetoFrontier<String>();
+        frontier.add(5, 3, "a", null);
+        assertFalse(frontier.strictlyDominates(5, 3));
+        assertTrue(frontier.strictlyDominates(6, 3));
+        assertTrue(frontier.strictlyDominates(5, 2));
+        assertTrue(frontier.strictlyDominates(6, 2));
+        assertFalse(frontier.strictlyDominates(4, 3));
+        assertFalse(frontier.strictlyDominates(5, 4));
+    }
+
+    @Test
+    public void addRejectsDominatedAndEvictsDominatedPoints()
+    {
+        ParetoFrontier<String> frontier = new ParetoFrontier<String>();
+        assertTrue(frontier.add(4, 2, "a", null));
+        assertTrue(frontier.add(6, 5, "b", null));
+        assertTrue(frontier.add(9, 7, "c", null));
+        assertFalse(frontier.add(4, 2, "duplicate", null));
+        assertFalse(frontier.add(7, 5, "dominated", null));
+        ArrayList<String> evicted = new ArrayList<String>();
+        assertTrue(frontier.add(4, 5, "d", evicted));
+        assertEquals("[a, b]", evicted.toString());
+        assertEquals("[d, c]", frontier.values().toString());
+        assertEquals(2, frontier.size());
+    }
+
+    @Test
+    public void matchesPairwiseDominance()
+    {
+        Random random = new Random(1234);
+        for (int round = 0; round < 50; round++)
+        {
+            ParetoFrontier<int[]> frontier = new ParetoFrontier<int[]>();
+            ArrayList<int[]> added = new ArrayList<int[]>();
+            for (int i = 0; i < 40; i++)
+            {
+                int[] p = {random.nextInt(30), random.nextInt(30)};
+                if (frontier.add(p[0], p[1], p, null))
+                {
+                    added.add(p);
+                }
+            }
+            for (int length = 0; length < 31; length++)
+            {
+                for (int reward = 0; reward < 31; reward++)
+                {
+                    boolean weak = false;
+                    boolean strict = false;
+                    for (int[] p : added)
+                    {
+                        if (p[0] <= length && p[1] >= reward)
+                        {
+                            weak = true;
+                            strict |= p[0] != length || p[1] != reward;
+                        }
+                    }
+                    assertEquals(weak, frontier.dominates(length, reward));
+                    assertEquals(strict, frontier.strictlyDominates(length, reward));
+                }
+            }
+            int lastReward = Integer.MIN_VALUE;
+            for (int[] p : frontier.values())
+            {
+                assertTrue(p[1] > lastReward);
+                lastReward = p[1];
+            }
+        }
+    }
+}
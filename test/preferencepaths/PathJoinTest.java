@@ -0,0 +1,222 @@
+package preferencepaths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.io.fs.FileUtils;
+
+
+public class PathJoinTest
+{
+    private static File dir;
+    private static GraphDatabaseService graphDb;
+    private static ArrayList<Node> nodes = new ArrayList<Node>();
+
+    @BeforeClass
+    public static void createDatabase() throws IOException
+    {
+        dir = Files.createTempDirectory("join").toFile();
+        graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(new File(dir, "graph.db"));
+        Random random = new Random(42);
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            for (int i = 0; i < 30; i++)
+            {
+                nodes.add(graphDb.createNode());
+            }
+            for (int e = 0; e < 120; e++)
+            {
+                Node a = nodes.get(random.nextInt(nodes.size()));
+                Node b = nodes.get(random.nextInt(nodes.size()));
+                a.createRelationshipTo(b, DynamicRelationshipType.withName("LINK"));
+            }
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+
+    @AfterClass
+    public static void deleteDatabase() throws IOException
+    {
+        graphDb.shutdown();
+        FileUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void joinsEveryChainOfLegPathsInLegOrder()
+    {
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            Random random = new Random(42);
+            for (int round = 0; round < 40; round++)
+            {
+                ArrayList<ArrayList<ArrayList<Relationship>>> legs = new ArrayList<ArrayList<ArrayList<Relationship>>>();
+                int count = 1 + random.nextInt(4);
+                ArrayList<Node> ends = new ArrayList<Node>();
+                for (int i = 0; i < count; i++)
+                {
+                    legs.add(leg(random, random.nextInt(12), ends));
+                }
+                ArrayList<String> expected = new ArrayList<String>();
+                expand(legs, 0, -1, new ArrayList<Relationship>(), expected);
+                ArrayList<String> actual = new ArrayList<String>();
+                for (ArrayList<Relationship> path : new PathJoin(legs))
+                {
+                    actual.add(ids(path));
+                }
+                assertEquals("round " + round, expected.toString(), actual.toString());
+            }
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+
+    @Test
+    public void deadEndsYieldNothing()
+    {
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            Relationship r = nodes.get(0).getRelationships(Direction.OUTGOING).iterator().next();
+            ArrayList<ArrayList<ArrayList<Relationship>>> legs = new ArrayList<ArrayList<ArrayList<Relationship>>>();
+            legs.add(single(r));
+            legs.add(new ArrayList<ArrayList<Relationship>>());
+            assertFalse(new PathJoin(legs).iterator().hasNext());
+            assertFalse(new PathJoin(new ArrayList<ArrayList<ArrayList<Relationship>>>()).iterator().hasNext());
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void nextPastLastPathThrows()
+    {
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            Relationship r = nodes.get(0).getRelationships(Direction.OUTGOING).iterator().next();
+            ArrayList<ArrayList<ArrayList<Relationship>>> legs = new ArrayList<ArrayList<ArrayList<Relationship>>>();
+            legs.add(single(r));
+            Iterator<ArrayList<Relationship>> it = new PathJoin(legs).iterator();
+            assertTrue(it.hasNext());
+            assertEquals(1, it.next().size());
+            assertFalse(it.hasNext());
+            it.next();
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+
+    /**
+     * Paths of one or two relationships walked mostly from the given end nodes
+     * of the previous leg, which are replaced by the ends of the new paths.
+     */
+    private static ArrayList<ArrayList<Relationship>> leg(Random random, int size, ArrayList<Node> ends)
+    {
+        ArrayList<ArrayList<Relationship>> paths = new ArrayList<ArrayList<Relationship>>();
+        ArrayList<Node> starts = new ArrayList<Node>(ends);
+        ends.clear();
+        while (paths.size() < size)
+        {
+            ArrayList<Relationship> path = new ArrayList<Relationship>();
+            Node n = starts.isEmpty() || random.nextInt(4) == 0 ? nodes.get(random.nextInt(nodes.size())) : starts.get(random.nextInt(starts.size()));
+            for (int hops = 1 + random.nextInt(2); hops > 0; hops--)
+            {
+                ArrayList<Relationship> out = new ArrayList<Relationship>();
+                for (Relationship r : n.getRelationships(Direction.OUTGOING))
+                {
+                    out.add(r);
+                }
+                if (out.isEmpty())
+                {
+                    break;
+                }
+                Relationship r = out.get(random.nextInt(out.size()));
+                path.add(r);
+                n = r.getEndNode();
+            }
+            if (!path.isEmpty())
+            {
+                paths.add(path);
+                ends.add(n);
+            }
+        }
+        return paths;
+    }
+
+    private static ArrayList<ArrayList<Relationship>> single(Relationship r)
+    {
+        ArrayList<Relationship> path = new ArrayList<Relationship>();
+        path.add(r);
+        ArrayList<ArrayList<Relationship>> paths = new ArrayList<ArrayList<Relationship>>();
+        paths.add(path);
+        return paths;
+    }
+
+    /**
+     * Nested loop join of the legs from the given one on, in leg order.
+     */
+    private static void expand(ArrayList<ArrayList<ArrayList<Relationship>>> legs, int leg, long from, ArrayList<Relationship> prefix, ArrayList<String> out)
+    {
+        if (leg == legs.size())
+        {
+            if (leg > 0)
+            {
+                out.add(ids(prefix));
+            }
+            return;
+        }
+        for (ArrayList<Relationship> path : legs.get(leg))
+        {
+            if (from >= 0 && path.get(0).getStartNode().getId() != from)
+            {
+                continue;
+            }
+            ArrayList<Relationship> joined = new ArrayList<Relationship>(prefix);
+            joined.addAll(path);
+            expand(legs, leg + 1, path.get(path.size() - 1).getEndNode().getId(), joined, out);
+        }
+    }
+
+    private static String ids(ArrayList<Relationship> path)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Relationship r : path)
+        {
+            sb.append(r.getId()).append(' ');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,279 @@
+package preferencepaths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+public class PreferenceSearchTest
+{
+    private static final long[] SEEDS = {7, 11, 42, 1234};
+
+    @Test
+    public void reachabilityPruningKeepsSkyline()
+    {
+        // Sparser graphs leave more nodes out of the start nodes' reach
+        for (long seed : SEEDS)
+        {
+            for (QueryOptions.Frontier frontier : new QueryOptions.Frontier[] {QueryOptions.Frontier.LOWER_BOUND, QueryOptions.Frontier.BOUND_SPREAD})
+            {
+                TestGraph graph = new TestGraph(400, seed % 2 == 0 ? 2 : 3, 2, seed);
+                long[][] ends = ends(graph, seed);
+                QueryOptions plain = options();
+                plain.setFrontier(frontier);
+                QueryOptions pruned = options();
+                pruned.setFrontier(frontier);
+                pruned.setReachabilityPruning(true);
+                assertEquals("seed " + seed + " " + frontier, skyline(search(graph, plain, ends)), skyline(search(graph, pruned, ends)));
+            }
+        }
+    }
+
+    @Test
+    public void topKSearchKeepsBestPathsOfFullSearch()
+    {
+        // A k too large to fill keeps every path found and never ends early
+        double[][] weights = {{1, 1}, {20, 1}, {1, 5}};
+        for (long seed : SEEDS)
+        {
+            for (QueryOptions.Frontier frontier : new QueryOptions.Frontier[] {QueryOptions.Frontier.LOWER_BOUND, QueryOptions.Frontier.BOUND_SPREAD})
+            {
+                for (double[] w : weights)
+                {
+                    TestGraph graph = new TestGraph(300, seed % 2 == 0 ? 2 : 3, 2, seed);
+                    long[][] ends = ends(graph, seed);
+                    QueryOptions full = options();
+                    full.setFrontier(frontier);
+                    full.setTopK(Integer.MAX_VALUE, w[0], w[1]);
+                    ArrayList<SkylinePath> all = search(graph, full, ends);
+                    for (int k : new int[] {1, 3, 10})
+                    {
+                        QueryOptions topK = options();
+                        topK.setFrontier(frontier);
+                        topK.setTopK(k, w[0], w[1]);
+                        String expected = skyline(new ArrayList<SkylinePath>(all.subList(0, Math.min(k, all.size()))));
+                        assertEquals("seed " + seed + " " + frontier + " k " + k, expected, skyline(search(graph, topK, ends)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void hopLimitBoundsRewardedPaths()
+    {
+        // Only the shortest path may go over the limit, which binds upper bounds
+        int longest = 0;
+        for (long seed : SEEDS)
+        {
+            TestGraph graph = new TestGraph(300, 3, 2, seed);
+            long[][] ends = ends(graph, seed);
+            for (int maxHops : new int[] {3, 4, 6, 9})
+            {
+                QueryOptions options = options();
+                options.setMaxHops(maxHops);
+                ArrayList<SkylinePath> paths = search(graph, options, ends);
+                for (SkylinePath p : paths)
+                {
+                    // Virtual edges from the super-source and to the super-sink count
+                    int hops = p.getRelationships().length + 2;
+                    assertTrue("seed " + seed + " limit " + maxHops + " hops " + hops, hops <= maxHops || p.getLength() == paths.get(0).getLength());
+                    longest = Math.max(longest, hops);
+                }
+            }
+        }
+        assertTrue(longest > 6);
+    }
+
+    @Test
+    public void listenerHearsEvictionsBeforeTheDominatingPath()
+    {
+        int removed = 0;
+        for (long seed : SEEDS)
+        {
+            for (QueryOptions.Frontier frontier : new QueryOptions.Frontier[] {QueryOptions.Frontier.LOWER_BOUND, QueryOptions.Frontier.BOUND_SPREAD})
+            {
+                TestGraph graph = new TestGraph(300, 3, 2, seed);
+                final ArrayList<SkylinePath> live = new ArrayList<SkylinePath>();
+                final int[] events = new int[2];
+                QueryOptions options = options();
+                options.setFrontier(frontier);
+                options.setListener(new SkylineListener()
+                {
+                    @Override
+                    public boolean pathAdded(SkylinePath path)
+                    {
+                        // Whatever the new path dominates was removed first
+                        for (SkylinePath p : live)
+                        {
+                            assertFalse(dominates(path, p));
+                            assertFalse(dominates(p, path));
+                        }
+                        live.add(path);
+                        events[0]++;
+                        return true;
+                    }
+
+                    @Override
+                    public void pathRemoved(SkylinePath path)
+                    {
+                        assertTrue(live.remove(path));
+                        events[1]++;
+                    }
+                });
+                ArrayList<SkylinePath> paths = search(graph, options, ends(graph, seed));
+                // The paths heard of and not removed are the skyline returned
+                assertEquals(paths.size(), live.size());
+                assertTrue(live.containsAll(paths));
+                assertEquals(paths.size(), events[0] - events[1]);
+                removed += events[1];
+            }
+        }
+        assertTrue(removed > 0);
+    }
+
+    @Test
+    public void listenerStopsSearch()
+    {
+        TestGraph graph = new TestGraph(300, 3, 2, 1234);
+        final ArrayList<SkylinePath> added = new ArrayList<SkylinePath>();
+        QueryOptions options = options();
+        options.setListener(new SkylineListener()
+        {
+            @Override
+            public boolean pathAdded(SkylinePath path)
+            {
+                added.add(path);
+                return false;
+            }
+
+            @Override
+            public void pathRemoved(SkylinePath path)
+            {
+            }
+        });
+        PreferenceSearch search = new PreferenceSearch(graph.view(), graph.rewards, options, null, QueryOptions.Frontier.LOWER_BOUND);
+        ArrayList<SkylinePath> paths = search.run(ends(graph, 1234)[0], ends(graph, 1234)[1]);
+        assertEquals(StopReason.STOPPED_BY_LISTENER, search.getStopReason());
+        assertEquals(1, added.size());
+        assertEquals(added, paths);
+    }
+
+    private static boolean dominates(SkylinePath a, SkylinePath b)
+    {
+        return a.getLength() <= b.getLength() && a.getReward() >= b.getReward();
+    }
+
+    @Test
+    public void budgetStopsSearchWithIncompleteResult()
+    {
+        for (long seed : SEEDS)
+        {
+            TestGraph graph = new TestGraph(300, 3, 2, seed);
+            long[][] ends = ends(graph, seed);
+            assertEquals(StopReason.COMPLETED, stoppedSearch(graph, options(), ends).getStopReason());
+            for (long budget : new long[] {0, 5, 20})
+            {
+                QueryOptions options = options();
+                options.setMaxExpansions(budget);
+                PreferenceSearch search = new PreferenceSearch(graph.view(), graph.rewards, options, null, QueryOptions.Frontier.LOWER_BOUND);
+                ArrayList<SkylinePath> paths = search.run(ends[0], ends[1]);
+                assertEquals(StopReason.BUDGET_EXHAUSTED, search.getStopReason());
+                assertFalse(new QueryResult(paths, search.getProfile(), search.getStopReason(), null).isComplete());
+                if (budget == 0)
+                {
+                    assertEquals(0, paths.size());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cancellationStopsSearch()
+    {
+        TestGraph graph = new TestGraph(300, 3, 2, 7);
+        QueryOptions options = options();
+        CancellationToken cancellation = new CancellationToken();
+        options.setCancellation(cancellation);
+        assertEquals(StopReason.COMPLETED, stoppedSearch(graph, options, ends(graph, 7)).getStopReason());
+        cancellation.cancel();
+        assertEquals(StopReason.CANCELLED, stoppedSearch(graph, options, ends(graph, 7)).getStopReason());
+    }
+
+    @Test
+    public void passedDeadlineStopsSearch()
+    {
+        TestGraph graph = new TestGraph(300, 3, 2, 7);
+        QueryOptions deadline = options();
+        deadline.setDeadline(System.nanoTime() - 1);
+        assertEquals(StopReason.TIMED_OUT, stoppedSearch(graph, deadline, ends(graph, 7)).getStopReason());
+        // The earlier of the deadline and the time out applies
+        QueryOptions timeOut = options();
+        timeOut.setTimeOut(0);
+        timeOut.setDeadline(System.nanoTime() + 60000000000L);
+        assertEquals(StopReason.TIMED_OUT, stoppedSearch(graph, timeOut, ends(graph, 7)).getStopReason());
+    }
+
+    @Test
+    public void stoppedSearchIsReportedIncomplete()
+    {
+        for (StopReason reason : StopReason.values())
+        {
+            QueryResult result = new QueryResult(new ArrayList<SkylinePath>(), null, reason, null);
+            assertEquals(reason == StopReason.COMPLETED, result.isComplete());
+        }
+    }
+
+    /**
+     * Runs a search that may stop early and returns it, to read why it stopped.
+     */
+    static PreferenceSearch stoppedSearch(TestGraph graph, QueryOptions options, long[][] ends)
+    {
+        PreferenceSearch search = new PreferenceSearch(graph.view(), graph.rewards, options, null, QueryOptions.Frontier.LOWER_BOUND);
+        search.run(ends[0], ends[1]);
+        return search;
+    }
+
+    static QueryOptions options()
+    {
+        QueryOptions options = new QueryOptions();
+        options.setTimeOut(Long.MAX_VALUE);
+        return options;
+    }
+
+    /**
+     * Start and end node sets drawn from the seed.
+     */
+    static long[][] ends(TestGraph graph, long seed)
+    {
+        Random random = new Random(seed);
+        return new long[][] {graph.pick(random, 40), graph.pick(random, 40)};
+    }
+
+    static ArrayList<SkylinePath> search(TestGraph graph, QueryOptions options, long[][] ends)
+    {
+        QueryOptions.Frontier frontier = options.getFrontier() == QueryOptions.Frontier.AUTO ? QueryOptions.Frontier.LOWER_BOUND : options.getFrontier();
+        PreferenceSearch search = new PreferenceSearch(graph.view(), graph.rewards, options, null, frontier);
+        ArrayList<SkylinePath> paths = search.run(ends[0], ends[1]);
+        assertEquals(StopReason.COMPLETED, search.getStopReason());
+        return paths;
+    }
+
+    /**
+     * Length and reward of every path, in order.
+     */
+    static String skyline(ArrayList<SkylinePath> paths)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (SkylinePath p : paths)
+        {
+            sb.append('(').append(p.getLength()).append(',').append(p.getReward()).append(')');
+        }
+        return sb.toString();
+    }
+}
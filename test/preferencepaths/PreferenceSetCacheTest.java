@@ -0,0 +1,174 @@
+package preferencepaths;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.io.fs.FileUtils;
+
+
+public class PreferenceSetCacheTest
+{
+    private static final String PERSONS = "MATCH (n:Person) RETURN id(n)";
+    private static final String PAGES = "MATCH (n:Page) RETURN id(n)";
+    private static final String KNOWS = "MATCH (a)-[:KNOWS*1..3]->(b) RETURN id(b)";
+    private static final String LIKES = "MATCH (a)-[r:LIKES]->(b) RETURN id(b)";
+    private static final String ANY_EDGE = "MATCH (a:Page)<--(b) RETURN id(b)";
+    private static final String ALL = "MATCH (n) RETURN id(n)";
+    private static final String[] QUERIES = {PERSONS, PAGES, KNOWS, LIKES, ANY_EDGE, ALL};
+
+    private File dir;
+    private GraphDatabaseService graphDb;
+    private PreferenceSetCache cache;
+    private PreferenceSet set;
+    private Node person;
+    private Node page;
+
+    @Before
+    public void createDatabase() throws IOException
+    {
+        dir = Files.createTempDirectory("sets").toFile();
+        graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(new File(dir, "graph.db"));
+        cache = new PreferenceSetCache();
+        graphDb.registerTransactionEventHandler(cache);
+        set = PreferenceSet.of(Collections.singletonList("1"));
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            person = graphDb.createNode(DynamicLabel.label("Person"));
+            page = graphDb.createNode(DynamicLabel.label("Page"));
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+        for (String query : QUERIES)
+        {
+            cache.put(query, set, cache.generation());
+        }
+    }
+
+    @After
+    public void deleteDatabase() throws IOException
+    {
+        graphDb.shutdown();
+        FileUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void readOnlyTransactionKeepsEverySet()
+    {
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            graphDb.getNodeById(person.getId()).getLabels();
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+        assertCached(PERSONS, PAGES, KNOWS, LIKES, ANY_EDGE, ALL);
+    }
+
+    @Test
+    public void labelledNodeChangeDropsSetsOfThatLabel()
+    {
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            person.setProperty("name", "x");
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+        assertCached(PAGES, KNOWS, LIKES, ANY_EDGE);
+        assertDropped(PERSONS, ALL);
+    }
+
+    @Test
+    public void relationshipChangeDropsSetsOfThatType()
+    {
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            person.createRelationshipTo(page, DynamicRelationshipType.withName("KNOWS"));
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+        assertCached(PERSONS, PAGES, LIKES);
+        assertDropped(KNOWS, ANY_EDGE, ALL);
+    }
+
+    @Test
+    public void rolledBackTransactionKeepsEverySet()
+    {
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            graphDb.createNode(DynamicLabel.label("Person"));
+            tx.failure();
+        }
+        finally
+        {
+            tx.close();
+        }
+        assertCached(PERSONS, PAGES, KNOWS, LIKES, ANY_EDGE, ALL);
+    }
+
+    @Test
+    public void staleGenerationIsNotCached()
+    {
+        cache.clear();
+        long generation = cache.generation();
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            page.addLabel(DynamicLabel.label("Popular"));
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+        cache.put(PERSONS, set, generation);
+        assertDropped(PERSONS);
+        cache.put(PERSONS, set, cache.generation());
+        assertCached(PERSONS);
+    }
+
+    private void assertCached(String... queries)
+    {
+        for (String query : queries)
+        {
+            assertSame(set, cache.get(query));
+        }
+    }
+
+    private void assertDropped(String... queries)
+    {
+        for (String query : queries)
+        {
+            assertNull(cache.get(query));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package preferencepaths;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+
+public class QueryPlannerTest
+{
+    @Test
+    public void autoPrunesNothing()
+    {
+        QueryOptions options = new QueryOptions();
+        assertEquals(QueryOptions.Pruning.AUTO, options.getPruning());
+        assertEquals(QueryOptions.Pruning.NONE, QueryPlanner.pruning(options, 2, 2, true, true));
+        assertEquals(QueryOptions.Pruning.NONE, QueryPlanner.pruning(options, 1000, 1000, false, true));
+    }
+
+    @Test
+    public void chosenPruningIsKeptWhereItCanRun()
+    {
+        for (QueryOptions.Pruning pruning : new QueryOptions.Pruning[] {QueryOptions.Pruning.NONE, QueryOptions.Pruning.TRAVERSAL, QueryOptions.Pruning.INDEX_PROBES})
+        {
+            QueryOptions options = new QueryOptions();
+            options.setPruning(pruning);
+            assertEquals(pruning, QueryPlanner.pruning(options, 10, 10, true, true));
+            // Nothing to prune without a store or with an empty set
+            assertEquals(QueryOptions.Pruning.NONE, QueryPlanner.pruning(options, 10, 10, true, false));
+            assertEquals(QueryOptions.Pruning.NONE, QueryPlanner.pruning(options, 0, 10, true, true));
+            assertEquals(QueryOptions.Pruning.NONE, QueryPlanner.pruning(options, 10, 0, true, true));
+        }
+        QueryOptions probes = new QueryOptions();
+        probes.setPruning(QueryOptions.Pruning.INDEX_PROBES);
+        assertEquals(QueryOptions.Pruning.TRAVERSAL, QueryPlanner.pruning(probes, 10, 10, false, true));
+    }
+
+    @Test
+    public void sequenceLegsProbeFewPairsOnTheIndex()
+    {
+        assertEquals(QueryOptions.Pruning.INDEX_PROBES, QueryPlanner.pruning(16, 16, true));
+        assertEquals(QueryOptions.Pruning.INDEX_PROBES, QueryPlanner.pruning(1, QueryPlanner.INDEX_PROBES, true));
+        assertEquals(QueryOptions.Pruning.TRAVERSAL, QueryPlanner.pruning(16, 17, true));
+        assertEquals(QueryOptions.Pruning.TRAVERSAL, QueryPlanner.pruning(2, 2, false));
+        // The product of large sets does not overflow into a small one
+        assertEquals(QueryOptions.Pruning.TRAVERSAL, QueryPlanner.pruning(65536, 65536, true));
+    }
+
+    @Test
+    public void spreadOrdersSparseRewardsOnKnownGraphs()
+    {
+        RewardTable rewards = new RewardTable(-1000000, 16);
+        rewards.put("1", 3);
+        RewardTable none = new RewardTable(-1000000, 16);
+        QueryOptions options = new QueryOptions();
+
+        assertEquals(QueryOptions.Frontier.BOUND_SPREAD, frontier(options, rewards, 49, 1000));
+        assertEquals(QueryOptions.Frontier.LOWER_BOUND, frontier(options, rewards, 50, 1000));
+        // Unknown graph size, or nothing to reward
+        assertEquals(QueryOptions.Frontier.LOWER_BOUND, frontier(options, rewards, 1, 0));
+        assertEquals(QueryOptions.Frontier.LOWER_BOUND, frontier(options, none, 1, 1000));
+
+        QueryOptions topK = new QueryOptions();
+        topK.setTopK(3, 1, 1);
+        assertEquals(QueryOptions.Frontier.LOWER_BOUND, frontier(topK, rewards, 1, 1000));
+
+        QueryOptions chosen = new QueryOptions();
+        chosen.setFrontier(QueryOptions.Frontier.BOUND_SPREAD);
+        assertEquals(QueryOptions.Frontier.BOUND_SPREAD, frontier(chosen, rewards, 500, 1000));
+    }
+
+    @Test
+    public void planRecordsSetSizes()
+    {
+        QueryPlan plan = QueryPlanner.plan(new QueryOptions(), QueryOptions.Pruning.TRAVERSAL, 40, 30, 12, 9, new RewardTable(-1000000, 16), 7, 0);
+        assertEquals(QueryOptions.Pruning.TRAVERSAL, plan.getPruning());
+        assertEquals(40, plan.getStartNodes());
+        assertEquals(30, plan.getEndNodes());
+        assertEquals(12, plan.getPrunedStartNodes());
+        assertEquals(9, plan.getPrunedEndNodes());
+        assertEquals(7, plan.getRewardedNodes());
+    }
+
+    private static QueryOptions.Frontier frontier(QueryOptions options, RewardTable rewards, int rewardedNodes, long graphNodes)
+    {
+        return QueryPlanner.plan(options, QueryOptions.Pruning.NONE, 10, 10, 10, 10, rewards, rewardedNodes, graphNodes).getFrontier();
+    }
+}
@@ -0,0 +1,284 @@
+package preferencepaths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.io.fs.FileUtils;
+
+
+public class QueryResultCacheTest
+{
+    private static final long[] STARTS = {5, 1, 3};
+    private static final long[] ENDS = {2, 4};
+
+    private File dir;
+    private GraphDatabaseService graphDb;
+    private QueryResultCache cache;
+    private Node[] nodes;
+    private Relationship knows;
+
+    @Before
+    public void createDatabase() throws IOException
+    {
+        dir = Files.createTempDirectory("results").toFile();
+        graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(new File(dir, "graph.db"));
+        cache = new QueryResultCache(3, 10);
+        graphDb.registerTransactionEventHandler(cache);
+        nodes = new Node[6];
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            for (int i = 0; i < nodes.length; i++)
+            {
+                nodes[i] = graphDb.createNode();
+            }
+            knows = nodes[0].createRelationshipTo(nodes[1], DynamicRelationshipType.withName("KNOWS"));
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+
+    @After
+    public void deleteDatabase() throws IOException
+    {
+        graphDb.shutdown();
+        FileUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void keyIgnoresOrderOfIdsAndExcludeSets()
+    {
+        QueryResultCache.Key key = key(STARTS, ENDS, sets("1", "KNOWS"), sets("2", "3"), new QueryOptions());
+        assertEquals(key, key(new long[] {3, 5, 1, 5}, new long[] {4, 2}, sets("1", "KNOWS"), sets("3", "2"), new QueryOptions()));
+        assertEquals(key.hashCode(), key(new long[] {1, 3, 5}, ENDS, sets("1", "KNOWS"), sets("3", "2"), new QueryOptions()).hashCode());
+    }
+
+    @Test
+    public void keyIgnoresLimitsThatOnlyCutSearchesShort()
+    {
+        QueryOptions limited = new QueryOptions();
+        limited.setMaxExpansions(10);
+        limited.setTimeOut(5);
+        limited.setCancellation(new CancellationToken());
+        assertEquals(key(STARTS, ENDS, sets("1"), sets(), new QueryOptions()), key(STARTS, ENDS, sets("1"), sets(), limited));
+    }
+
+    @Test
+    public void keyTellsApartWhatShapesTheResult()
+    {
+        QueryResultCache.Key key = key(STARTS, ENDS, sets("1", "KNOWS"), sets(), new QueryOptions());
+        // Preference sets keep their order, which sets their rewards
+        assertFalse(key.equals(key(STARTS, ENDS, sets("KNOWS", "1"), sets(), new QueryOptions())));
+        assertFalse(key.equals(key(ENDS, STARTS, sets("1", "KNOWS"), sets(), new QueryOptions())));
+        assertFalse(key.equals(key(STARTS, ENDS, sets("1"), sets("KNOWS"), new QueryOptions())));
+
+        QueryOptions hops = new QueryOptions();
+        hops.setMaxHops(3);
+        assertFalse(key.equals(key(STARTS, ENDS, sets("1", "KNOWS"), sets(), hops)));
+        QueryOptions frontier = new QueryOptions();
+        frontier.setFrontier(QueryOptions.Frontier.BOUND_SPREAD);
+        assertFalse(key.equals(key(STARTS, ENDS, sets("1", "KNOWS"), sets(), frontier)));
+
+        QueryOptions topK = new QueryOptions();
+        topK.setTopK(3, 1, 1);
+        QueryOptions otherWeights = new QueryOptions();
+        otherWeights.setTopK(3, 1, 2);
+        QueryOptions sameWeights = new QueryOptions();
+        sameWeights.setTopK(3, 1, 1);
+        QueryResultCache.Key topKKey = key(STARTS, ENDS, sets("1", "KNOWS"), sets(), topK);
+        assertFalse(key.equals(topKKey));
+        assertFalse(topKKey.equals(key(STARTS, ENDS, sets("1", "KNOWS"), sets(), otherWeights)));
+        assertEquals(topKKey, key(STARTS, ENDS, sets("1", "KNOWS"), sets(), sameWeights));
+    }
+
+    @Test
+    public void listenerOrDisabledCacheGivesNoKey()
+    {
+        QueryOptions disabled = new QueryOptions();
+        disabled.setResultCacheEnabled(false);
+        assertNull(key(STARTS, ENDS, sets("1"), sets(), disabled));
+        QueryOptions listened = new QueryOptions();
+        listened.setListener(new SkylineListener()
+        {
+            @Override
+            public boolean pathAdded(SkylinePath path)
+            {
+                return true;
+            }
+
+            @Override
+            public void pathRemoved(SkylinePath path)
+            {
+            }
+        });
+        assertNull(key(STARTS, ENDS, sets("1"), sets(), listened));
+    }
+
+    @Test
+    public void resultIsServedUntilARelationshipAtAVisitedNodeChanges()
+    {
+        QueryResult first = result();
+        QueryResult second = result();
+        QueryResultCache.Key firstKey = key(new long[] {1}, ENDS, sets(), sets(), new QueryOptions());
+        QueryResultCache.Key secondKey = key(new long[] {2}, ENDS, sets(), sets(), new QueryOptions());
+        cache.put(firstKey, first, visited(nodes[0], nodes[1]), cache.generation());
+        cache.put(secondKey, second, visited(nodes[2], nodes[3]), cache.generation());
+        assertSame(first, cache.get(firstKey));
+        assertSame(second, cache.get(secondKey));
+
+        // Property changes and new relationships elsewhere keep both entries
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            nodes[0].setProperty("name", "x");
+            nodes[4].createRelationshipTo(nodes[5], DynamicRelationshipType.withName("KNOWS"));
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+        assertSame(first, cache.get(firstKey));
+        assertSame(second, cache.get(secondKey));
+
+        tx = graphDb.beginTx();
+        try
+        {
+            nodes[3].createRelationshipTo(nodes[5], DynamicRelationshipType.withName("KNOWS"));
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+        assertSame(first, cache.get(firstKey));
+        assertNull(cache.get(secondKey));
+
+        tx = graphDb.beginTx();
+        try
+        {
+            knows.delete();
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+        assertNull(cache.get(firstKey));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void staleGenerationIsNotCached()
+    {
+        QueryResultCache.Key key = key(STARTS, ENDS, sets(), sets(), new QueryOptions());
+        long generation = cache.generation();
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            nodes[4].createRelationshipTo(nodes[5], DynamicRelationshipType.withName("KNOWS"));
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+        cache.put(key, result(), visited(nodes[0]), generation);
+        assertNull(cache.get(key));
+        QueryResult result = result();
+        cache.put(key, result, visited(nodes[0]), cache.generation());
+        assertSame(result, cache.get(key));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted()
+    {
+        QueryResultCache.Key[] keys = new QueryResultCache.Key[5];
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = key(new long[] {i}, ENDS, sets(), sets(), new QueryOptions());
+        }
+        cache.put(keys[0], result(), visited(nodes[0]), cache.generation());
+        cache.put(keys[1], result(), visited(nodes[1]), cache.generation());
+        cache.put(keys[2], result(), visited(nodes[2]), cache.generation());
+        cache.get(keys[0]);
+        // A fourth entry evicts the least recently used one
+        cache.put(keys[3], result(), visited(nodes[3]), cache.generation());
+        assertNull(cache.get(keys[1]));
+        assertEquals(3, cache.size());
+
+        // So does going over the node budget of 10, and a result visiting more
+        // nodes than the whole budget is not kept at all
+        cache.put(keys[4], result(), visited(new long[9]), cache.generation());
+        assertEquals(2, cache.size());
+        assertNull(cache.get(keys[2]));
+        assertNull(cache.get(keys[0]));
+        cache.put(keys[1], result(), visited(new long[11]), cache.generation());
+        assertNull(cache.get(keys[1]));
+    }
+
+    private static QueryResultCache.Key key(long[] startIds, long[] endIds, ArrayList<PreferenceSet> preferenceSets, ArrayList<PreferenceSet> excludeSets, QueryOptions options)
+    {
+        return QueryResultCache.key(startIds, endIds, preferenceSets, excludeSets, options);
+    }
+
+    /**
+     * One set per value, each holding a node id or a relationship type name.
+     */
+    private static ArrayList<PreferenceSet> sets(String... values)
+    {
+        ArrayList<PreferenceSet> sets = new ArrayList<PreferenceSet>();
+        for (String value : values)
+        {
+            sets.add(PreferenceSet.of(Arrays.asList(value)));
+        }
+        return sets;
+    }
+
+    private static QueryResult result()
+    {
+        return new QueryResult(new ArrayList<SkylinePath>());
+    }
+
+    private static NodeIdSet visited(Node... visitedNodes)
+    {
+        long[] ids = new long[visitedNodes.length];
+        for (int i = 0; i < ids.length; i++)
+        {
+            ids[i] = visitedNodes[i].getId();
+        }
+        return NodeIdSet.of(ids, ids.length);
+    }
+
+    /**
+     * Distinct ids far above the nodes of the store.
+     */
+    private static NodeIdSet visited(long[] ids)
+    {
+        for (int i = 0; i < ids.length; i++)
+        {
+            ids[i] = 1000 + i;
+        }
+        return NodeIdSet.of(ids, ids.length);
+    }
+}
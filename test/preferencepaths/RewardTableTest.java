@@ -0,0 +1,122 @@
+package preferencepaths;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+public class RewardTableTest
+{
+    private static final int NEGATIVE_REWARD = -1000;
+
+    @Test
+    public void packedCostsRoundTrip()
+    {
+        int[] values = {0, 1, -1, 7, -7, NEGATIVE_REWARD, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int length : values)
+        {
+            for (int reward : values)
+            {
+                long cost = RewardTable.pack(length, reward);
+                assertEquals(length, RewardTable.length(cost));
+                assertEquals(reward, RewardTable.reward(cost));
+            }
+        }
+    }
+
+    @Test
+    public void costAddsTypeAndNodeRewards()
+    {
+        RewardTable rewards = new RewardTable(NEGATIVE_REWARD, 16);
+        rewards.put("LIKES", 2);
+        rewards.put("12", 3);
+        assertCost(1, 5, rewards.cost(rewards.typeReward("LIKES"), 12));
+        assertCost(1, 2, rewards.cost(rewards.typeReward("LIKES"), 13));
+        assertCost(1, 3, rewards.cost(0, 12));
+        assertCost(1, 0, rewards.cost(null, 13));
+        // Virtual nodes have no reward
+        assertCost(1, 2, rewards.cost(2, -1));
+        assertCost(1, 0, rewards.cost(null, -2));
+    }
+
+    @Test
+    public void excludedEntriesLengthenEdges()
+    {
+        RewardTable rewards = new RewardTable(NEGATIVE_REWARD, 16);
+        rewards.put("FOLLOWS", NEGATIVE_REWARD);
+        rewards.put("12", NEGATIVE_REWARD);
+        rewards.put("13", -5);
+        assertCost(1 + 1000, NEGATIVE_REWARD, rewards.cost(rewards.typeReward("FOLLOWS"), 14));
+        assertCost(1 + 1000 + 1000, 2 * NEGATIVE_REWARD, rewards.cost(rewards.typeReward("FOLLOWS"), 12));
+        // Rewards above the exclude reward only lower the reward
+        assertCost(1, -5, rewards.cost(0, 13));
+    }
+
+    @Test
+    public void laterSetsTakePrecedence()
+    {
+        RewardTable rewards = new RewardTable(NEGATIVE_REWARD, 16);
+        rewards.put("1", 9);
+        rewards.put("4", 9);
+        rewards.putAll(NodeIdSet.of(new long[] {1, 2, 3}, 3), 2);
+        rewards.putAll(NodeIdSet.of(new long[] {3, 5}, 2), 1);
+        assertEquals(2, rewards.nodeReward(1));
+        assertEquals(2, rewards.nodeReward(2));
+        assertEquals(1, rewards.nodeReward(3));
+        assertEquals(9, rewards.nodeReward(4));
+        assertEquals(1, rewards.nodeReward(5));
+        assertEquals(0, rewards.nodeReward(6));
+        assertTrue(rewards.hasNodeReward(4));
+        assertTrue(rewards.hasNodeReward(5));
+        assertFalse(rewards.hasNodeReward(6));
+    }
+
+    @Test
+    public void typeRewardsAreLookedUpByName()
+    {
+        RewardTable rewards = new RewardTable(NEGATIVE_REWARD, 16);
+        rewards.put("KNOWS", 1);
+        rewards.put("LIKES", 4);
+        rewards.put("KNOWS", 3);
+        assertEquals(3, rewards.typeReward("KNOWS"));
+        assertEquals(4, rewards.typeReward("LIKES"));
+        assertEquals(0, rewards.typeReward("FOLLOWS"));
+        assertArrayEquals(new int[] {4, 0, 3}, rewards.typeRewards(new String[] {"LIKES", "FOLLOWS", "KNOWS"}));
+    }
+
+    @Test
+    public void maxEdgeRewardAddsBestTypeAndNode()
+    {
+        RewardTable rewards = new RewardTable(NEGATIVE_REWARD, 16);
+        assertEquals(0, rewards.maxEdgeReward());
+        rewards.put("KNOWS", NEGATIVE_REWARD);
+        rewards.put("LIKES", 4);
+        rewards.put("7", 2);
+        assertEquals(6, rewards.maxEdgeReward());
+        // An empty set rewards no node
+        rewards.putAll(NodeIdSet.of(new long[0], 0), 10);
+        assertEquals(6, rewards.maxEdgeReward());
+        rewards.putAll(NodeIdSet.of(new long[] {8}, 1), 5);
+        assertEquals(9, rewards.maxEdgeReward());
+    }
+
+    @Test
+    public void nodeIdsAreAllDigits()
+    {
+        assertTrue(RewardTable.isNodeId("0"));
+        assertTrue(RewardTable.isNodeId("123456789012"));
+        assertFalse(RewardTable.isNodeId(""));
+        assertFalse(RewardTable.isNodeId("-1"));
+        assertFalse(RewardTable.isNodeId("KNOWS"));
+        assertFalse(RewardTable.isNodeId("12a"));
+    }
+
+    private static void assertCost(int length, int reward, long cost)
+    {
+        assertEquals(length, RewardTable.length(cost));
+        assertEquals(reward, RewardTable.reward(cost));
+    }
+}
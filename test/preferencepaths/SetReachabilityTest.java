@@ -0,0 +1,175 @@
+package preferencepaths;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.io.fs.FileUtils;
+
+
+public class SetReachabilityTest
+{
+    private static File dir;
+    private static GraphDatabaseService graphDb;
+    private static long[] nodeIds;
+
+    @BeforeClass
+    public static void createDatabase() throws IOException
+    {
+        dir = Files.createTempDirectory("reachability").toFile();
+        graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(new File(dir, "graph.db"));
+        Random random = new Random(42);
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            // Few edges, so that many start nodes reach no end node
+            ArrayList<Node> nodes = new ArrayList<Node>();
+            for (int i = 0; i < 200; i++)
+            {
+                Node n = graphDb.createNode();
+                if (i % 11 == 0)
+                {
+                    n.delete();
+                    continue;
+                }
+                nodes.add(n);
+            }
+            for (int e = 0; e < 160; e++)
+            {
+                Node a = nodes.get(random.nextInt(nodes.size()));
+                Node b = nodes.get(random.nextInt(nodes.size()));
+                a.createRelationshipTo(b, DynamicRelationshipType.withName("KNOWS"));
+            }
+            nodeIds = new long[nodes.size()];
+            for (int i = 0; i < nodeIds.length; i++)
+            {
+                nodeIds[i] = nodes.get(i).getId();
+            }
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+    }
+
+    @AfterClass
+    public static void deleteDatabase() throws IOException
+    {
+        graphDb.shutdown();
+        FileUtils.deleteRecursively(dir);
+    }
+
+    @Test
+    public void pruneKeepsExactlyTheJoinedNodes()
+    {
+        Random random = new Random(7);
+        int pruned = 0;
+        int kept = 0;
+        Transaction tx = graphDb.beginTx();
+        try
+        {
+            SetReachability reachability = new SetReachability(graphDb);
+            for (int round = 0; round < 30; round++)
+            {
+                // Repeated ids and nodes in both sets included
+                long[] startIds = pick(random, 1 + round % 12);
+                long[] endIds = pick(random, 1 + round % 7);
+                long[][] result = reachability.prune(startIds, endIds);
+
+                long[] starts = new long[startIds.length];
+                int startCount = 0;
+                HashSet<Long> reachedEnds = new HashSet<Long>();
+                for (long s : startIds)
+                {
+                    HashSet<Long> reached = reached(s);
+                    boolean joined = false;
+                    for (long t : endIds)
+                    {
+                        if (reached.contains(t))
+                        {
+                            joined = true;
+                            reachedEnds.add(t);
+                        }
+                    }
+                    if (joined)
+                    {
+                        starts[startCount++] = s;
+                    }
+                }
+                long[] ends = new long[endIds.length];
+                int endCount = 0;
+                for (long t : endIds)
+                {
+                    if (reachedEnds.contains(t))
+                    {
+                        ends[endCount++] = t;
+                    }
+                }
+
+                String sets = Arrays.toString(startIds) + " to " + Arrays.toString(endIds);
+                assertArrayEquals(sets, Arrays.copyOf(starts, startCount), result[0]);
+                assertArrayEquals(sets, Arrays.copyOf(ends, endCount), result[1]);
+                pruned += startIds.length - startCount + endIds.length - endCount;
+                kept += startCount + endCount;
+            }
+            tx.success();
+        }
+        finally
+        {
+            tx.close();
+        }
+        assertTrue(pruned > 0 && kept > 0);
+    }
+
+    private static long[] pick(Random random, int count)
+    {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++)
+        {
+            ids[i] = nodeIds[random.nextInt(nodeIds.length)];
+        }
+        return ids;
+    }
+
+    /**
+     * Every node reachable from a node over outgoing edges, itself included.
+     */
+    private static HashSet<Long> reached(long from)
+    {
+        HashSet<Long> reached = new HashSet<Long>();
+        ArrayDeque<Long> queue = new ArrayDeque<Long>();
+        reached.add(from);
+        queue.add(from);
+        while (!queue.isEmpty())
+        {
+            Node n = graphDb.getNodeById(queue.poll());
+            for (Relationship r : n.getRelationships(Direction.OUTGOING))
+            {
+                if (reached.add(r.getEndNode().getId()))
+                {
+                    queue.add(r.getEndNode().getId());
+                }
+            }
+        }
+        return reached;
+    }
+}
@@ -0,0 +1,115 @@
+package preferencepaths;
+
+import java.util.Random;
+
+
+/**
+ * Random directed graph held in edge arrays, with rewards on random node sets,
+ * for tests of the search that should not need a database. Edge handles are
+ * edge indexes and double as relationship ids.
+ */
+class TestGraph
+{
+    private static final int NEGATIVE_REWARD = -1000000;
+
+    final int nodes;
+    final int[] sources;
+    final int[] targets;
+    final RewardTable rewards;
+
+    /**
+     * Draws a graph of nodes with the given out degree and gives rewardLevels
+     * node sets, each of about a fifth of the nodes, rewards from rewardLevels
+     * down to 1.
+     */
+    TestGraph(int nodes, int degree, int rewardLevels, long seed)
+    {
+        Random random = new Random(seed);
+        this.nodes = nodes;
+        sources = new int[nodes * degree];
+        targets = new int[nodes * degree];
+        for (int e = 0; e < sources.length; e++)
+        {
+            sources[e] = e / degree;
+            targets[e] = random.nextInt(nodes);
+        }
+        rewards = new RewardTable(NEGATIVE_REWARD, 16);
+        for (int level = rewardLevels; level > 0; level--)
+        {
+            long[] ids = pick(random, nodes / 5);
+            rewards.putAll(NodeIdSet.of(ids, ids.length), level);
+        }
+    }
+
+    long[] pick(Random random, int count)
+    {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++)
+        {
+            ids[i] = random.nextInt(nodes);
+        }
+        return ids;
+    }
+
+    SearchGraph view()
+    {
+        return new SearchGraph()
+        {
+            @Override
+            public void expandIncoming(long[] nodes, int from, int to, Expansion[] out)
+            {
+                for (int i = from; i < to; i++)
+                {
+                    out[i].clear();
+                    for (int e = 0; nodes[i] >= 0 && e < targets.length; e++)
+                    {
+                        if (targets[e] == nodes[i])
+                        {
+                            out[i].add(sources[e], e, rewards.cost(0, sources[e]));
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void expandOutgoing(long[] nodes, int from, int to, Expansion[] out)
+            {
+                for (int i = from; i < to; i++)
+                {
+                    out[i].clear();
+                    for (int e = 0; nodes[i] >= 0 && e < sources.length; e++)
+                    {
+                        if (sources[e] == nodes[i])
+                        {
+                            out[i].add(targets[e], e, rewards.cost(0, sources[e]));
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public long startNode(long edge)
+            {
+                return sources[(int) edge];
+            }
+
+            @Override
+            public long endNode(long edge)
+            {
+                return targets[(int) edge];
+            }
+
+            @Override
+            public long cost(long edge)
+            {
+                return rewards.cost(0, targets[(int) edge]);
+            }
+
+            @Override
+            public long relationshipId(long edge)
+            {
+                return edge;
+            }
+        };
+    }
+}